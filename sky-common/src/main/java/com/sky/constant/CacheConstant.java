@@ -0,0 +1,44 @@
+package com.sky.constant;
+
+/**
+ * 缓存相关常量
+ */
+public class CacheConstant {
+
+    //菜品缓存的命名空间
+    public static final String DISH_NAMESPACE = "dish";
+
+    //菜单目录的版本号，菜品、口味、套餐、分类任意变更都会递增
+    public static final String CATALOG_VERSION_KEY = "catalog:version";
+
+    //菜单目录的变更日志（有序集合，成员为 类型:id，分数为最近一次变更的版本号）
+    public static final String CATALOG_CHANGES_KEY = "catalog:changes";
+
+    //变更日志被压缩掉的最大版本号，客户端版本低于它时只能全量同步
+    public static final String CATALOG_COMPACTED_KEY = "catalog:compacted";
+
+    //变更日志最多保留的实体数量
+    public static final long CATALOG_CHANGES_MAX_SIZE = 2000;
+
+    //命名空间版本号key的前缀，版本号通过INCR递增
+    public static final String VERSION_KEY_PREFIX = "cache_version:";
+
+    //缓存数据的过期时间（分钟），失效后的旧版本key依靠过期自动清理
+    public static final long DEFAULT_TTL_MINUTES = 60;
+
+    //openid对应的用户（id、注册时间）缓存key的前缀
+    public static final String USER_OPENID_KEY_PREFIX = "user:openid:";
+
+    //openid对应的用户缓存的过期时间（天）
+    public static final long USER_OPENID_TTL_DAYS = 7;
+
+    //已经撤销的jwt令牌key的前缀，后面为令牌的SHA-256摘要，过期时间与令牌相同
+    public static final String JWT_REVOKED_KEY_PREFIX = "jwt:revoked:";
+
+    //jwt令牌撤销的发布订阅频道，消息内容为令牌的摘要
+    public static final String JWT_REVOKED_CHANNEL = "jwt:revoked";
+
+    //菜品、套餐id布隆过滤器新增id的发布订阅频道，消息内容为 dish:id 或 setmeal:id
+    public static final String BLOOM_ADDED_CHANNEL = "bloom:added";
+
+}
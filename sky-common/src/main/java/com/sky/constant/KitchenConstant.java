@@ -0,0 +1,28 @@
+package com.sky.constant;
+
+/**
+ * 后厨出餐队列相关常量
+ */
+public class KitchenConstant {
+
+    //后厨队列变更的发布订阅频道，消息内容为 节点id|add或remove|订单id
+    public static final String KITCHEN_CHANNEL = "kitchen:changed";
+
+    //已出餐订单的key前缀，每个订单一个key，重启重建队列时排除这些订单
+    public static final String KITCHEN_DONE_KEY_PREFIX = "kitchen:done:";
+
+    //已出餐记录的过期时间（小时），从出餐时开始计算，订单出餐后通常很快变为派送中，不需要长期保存
+    public static final long KITCHEN_DONE_TTL_HOURS = 24;
+
+    //基础备餐时间（分钟）
+    public static final int BASE_PREP_MINUTES = 5;
+
+    //每份菜品增加的备餐时间（分钟）
+    public static final int PREP_MINUTES_PER_ITEM = 1;
+
+    //最长备餐时间（分钟）
+    public static final int MAX_PREP_MINUTES = 45;
+
+    //订单没有预计送达时间时，按下单后多少分钟送达计算
+    public static final int DEFAULT_DELIVERY_MINUTES = 45;
+}
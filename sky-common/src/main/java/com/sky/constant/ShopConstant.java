@@ -0,0 +1,19 @@
+package com.sky.constant;
+
+/**
+ * 店铺相关常量
+ */
+public class ShopConstant {
+
+    //店铺营业状态在redis中的key
+    public static final String SHOP_STATUS_KEY = "SHOP_STATUS";
+
+    //店铺营业状态变更的发布订阅频道，消息内容为新的状态
+    public static final String SHOP_STATUS_CHANNEL = "shop:status";
+
+    //营业中
+    public static final Integer OPEN = 1;
+
+    //打烊中
+    public static final Integer CLOSED = 0;
+}
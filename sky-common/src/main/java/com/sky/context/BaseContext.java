@@ -1,19 +1,29 @@
 package com.sky.context;
 
+/**
+ * 当前登录id的快捷访问，数据保存在RequestContext中
+ */
 public class BaseContext {
 
-    public static ThreadLocal<Long> threadLocal = new ThreadLocal<>();
-
+    /**
+     * 保存当前用户的id，管理端请求由拦截器直接设置员工id
+     * @param id
+     */
     public static void setCurrentId(Long id) {
-        threadLocal.set(id);
+        RequestContext.current().setUserId(id);
     }
 
     public static Long getCurrentId() {
-        return threadLocal.get();
+        RequestContext context = RequestContext.get();
+        return context == null ? null : context.getCurrentId();
     }
 
     public static void removeCurrentId() {
-        threadLocal.remove();
+        RequestContext context = RequestContext.get();
+        if (context != null) {
+            context.setUserId(null);
+            context.setEmpId(null);
+        }
     }
 
 }
@@ -0,0 +1,213 @@
+package com.sky.context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 请求上下文，保存当前请求的用户id、员工id、请求id和截止时间
+ *
+ * 由过滤器在请求开始时创建、结束时清除，拦截器校验令牌后填入用户id或员工id。
+ * 线程池中的线程会被不同的请求复用，切换线程执行任务时不能直接读取ThreadLocal，
+ * 需要通过wrap方法在提交任务的线程上复制一份上下文，在执行任务的线程上恢复，执行完成后还原。
+ */
+public class RequestContext {
+
+    private static final ThreadLocal<RequestContext> HOLDER = new ThreadLocal<>();
+
+    private Long userId;
+    private Long empId;
+    private String requestId;
+    //截止时间的毫秒时间戳，0表示没有限制
+    private long deadline;
+
+    public RequestContext() {
+    }
+
+    public RequestContext(String requestId, long deadline) {
+        this.requestId = requestId;
+        this.deadline = deadline;
+    }
+
+    private RequestContext(RequestContext other) {
+        this.userId = other.userId;
+        this.empId = other.empId;
+        this.requestId = other.requestId;
+        this.deadline = other.deadline;
+    }
+
+    /**
+     * 获取当前线程的上下文，不存在时创建一个空的上下文
+     * @return
+     */
+    public static RequestContext current() {
+        RequestContext context = HOLDER.get();
+        if (context == null) {
+            context = new RequestContext();
+            HOLDER.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * 获取当前线程的上下文，不存在时返回null
+     * @return
+     */
+    public static RequestContext get() {
+        return HOLDER.get();
+    }
+
+    public static void set(RequestContext context) {
+        if (context == null) {
+            HOLDER.remove();
+        } else {
+            HOLDER.set(context);
+        }
+    }
+
+    public static void clear() {
+        HOLDER.remove();
+    }
+
+    /**
+     * 复制当前线程的上下文，用于传递到其他线程，当前线程没有上下文时返回null
+     * @return
+     */
+    public static RequestContext capture() {
+        RequestContext context = HOLDER.get();
+        return context == null ? null : new RequestContext(context);
+    }
+
+    /**
+     * 包装任务，执行时使用提交任务时的上下文，执行完成后恢复执行线程原来的上下文
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext captured = capture();
+        return () -> {
+            RequestContext previous = HOLDER.get();
+            set(captured);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        RequestContext captured = capture();
+        return () -> {
+            RequestContext previous = HOLDER.get();
+            set(captured);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * 包装CompletableFuture.supplyAsync使用的任务
+     * @param task
+     * @return
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        RequestContext captured = capture();
+        return () -> {
+            RequestContext previous = HOLDER.get();
+            set(captured);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * 包装CompletableFuture.thenApply等回调，回调可能在完成前一阶段的任意线程上执行，
+     * 所以要在注册回调的时候复制上下文
+     * @param fn
+     * @return
+     */
+    public static <T, R> Function<T, R> wrapFunction(Function<T, R> fn) {
+        RequestContext captured = capture();
+        return value -> {
+            RequestContext previous = HOLDER.get();
+            set(captured);
+            try {
+                return fn.apply(value);
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * 包装线程池，提交的每个任务都会带上提交时的上下文
+     * @param executor
+     * @return
+     */
+    public static Executor wrapExecutor(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * 当前登录的用户或员工id，用户端请求返回用户id，管理端请求返回员工id
+     * @return
+     */
+    public Long getCurrentId() {
+        return empId != null ? empId : userId;
+    }
+
+    /**
+     * 距离截止时间的剩余毫秒数，没有截止时间时返回Long.MAX_VALUE
+     * @return
+     */
+    public long remainingMillis() {
+        if (deadline <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return deadline - System.currentTimeMillis();
+    }
+
+    public boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getEmpId() {
+        return empId;
+    }
+
+    public void setEmpId(Long empId) {
+        this.empId = empId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+}
@@ -0,0 +1,28 @@
+package com.sky.enumeration;
+
+/**
+ * 菜单目录中可能发生变更的实体类型
+ */
+public enum CatalogEntityType {
+
+    /**
+     * 分类
+     */
+    CATEGORY,
+
+    /**
+     * 菜品
+     */
+    DISH,
+
+    /**
+     * 菜品口味，id为口味所属的菜品id
+     */
+    FLAVOR,
+
+    /**
+     * 套餐
+     */
+    SETMEAL
+
+}
@@ -0,0 +1,18 @@
+package com.sky.enumeration;
+
+/**
+ * WebSocket发送队列已满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 丢弃队列中最早的消息，保留最新的消息
+     */
+    DROP_OLDEST,
+
+    /**
+     * 断开消费过慢的客户端，客户端重连后重新获取数据
+     */
+    DISCONNECT
+
+}
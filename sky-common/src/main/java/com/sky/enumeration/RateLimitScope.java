@@ -0,0 +1,23 @@
+package com.sky.enumeration;
+
+/**
+ * 限流的范围
+ */
+public enum RateLimitScope {
+
+    /**
+     * 每个登录的用户（或员工）单独计数，未登录时按客户端ip计数
+     */
+    USER,
+
+    /**
+     * 每个客户端ip单独计数
+     */
+    IP,
+
+    /**
+     * 接口的所有请求一起计数
+     */
+    GLOBAL
+
+}
@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 菜品或套餐不存在
+ */
+public class MenuItemNotFoundException extends BaseException {
+
+    public MenuItemNotFoundException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 请求过于频繁
+ */
+public class RateLimitException extends BaseException {
+
+    public RateLimitException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.business-hours")
+@Data
+public class BusinessHoursProperties {
+
+    /**
+     * 是否按营业时间自动开店、打烊，关闭时仍然只能手动设置营业状态
+     */
+    private boolean enabled = false;
+
+    /**
+     * 营业时间所在的时区
+     */
+    private String zone = "Asia/Shanghai";
+
+    /**
+     * 每周的营业时间，多个时间段用逗号分隔，如 10:00-14:00,17:00-21:30
+     * 结束时间早于开始时间表示营业到第二天，没有配置的日期不营业
+     */
+    private Map<DayOfWeek, String> weekly = new EnumMap<>(DayOfWeek.class);
+
+    /**
+     * 节假日的营业时间，优先于每周的营业时间，key为日期(yyyy-MM-dd)，值为空表示全天不营业
+     * yml中日期需要写成 "[2026-10-01]" 的形式
+     */
+    private Map<String, String> holidays = new LinkedHashMap<>();
+
+    /**
+     * 打烊前多少分钟停止接单
+     */
+    private int lastOrderMinutes = 0;
+
+    /**
+     * 预先计算多少天之内的营业时间
+     */
+    private int horizonDays = 14;
+
+}
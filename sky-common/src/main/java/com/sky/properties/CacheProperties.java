@@ -0,0 +1,63 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class CacheProperties {
+
+    /**
+     * 缓存未命中时是否先返回最近一次加载的旧值，同时在后台异步刷新（stale-while-revalidate）
+     */
+    private boolean staleWhileRevalidate = false;
+
+    /**
+     * 旧值最多可以继续使用的时间（秒）
+     */
+    private long staleTtlSeconds = 30;
+
+    /**
+     * 每个缓存在本地最多保留的旧值数量
+     */
+    private int maxStaleEntries = 1000;
+
+    /**
+     * 菜品、套餐id布隆过滤器预计容纳的id数量
+     */
+    private long bloomExpectedInsertions = 100000;
+
+    /**
+     * 布隆过滤器期望的误判率
+     */
+    private double bloomFalsePositiveRate = 0.01;
+
+    /**
+     * redis缓存值的写入格式：smile（二进制，默认）或jdk（jdk序列化）
+     * 滚动升级期间先保持jdk写入，所有节点都能读取smile格式后再切换
+     */
+    private String valueFormat = "smile";
+
+    /**
+     * 序列化后超过该字节数的缓存值使用LZ4压缩
+     */
+    private int compressThresholdBytes = 1024;
+
+    /**
+     * 启动时是否预热分类、菜品、套餐缓存
+     */
+    private boolean warmUpEnabled = true;
+
+    /**
+     * 预热的最长等待时间（秒），超时后不再等待，直接对外提供服务
+     */
+    private long warmUpTimeoutSeconds = 30;
+
+    /**
+     * 并行预热的线程数
+     */
+    private int warmUpThreads = 4;
+
+}
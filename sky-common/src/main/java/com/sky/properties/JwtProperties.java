@@ -23,4 +23,10 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 无法从redis查询令牌是否已撤销时是否接受签名有效的令牌，
+     * true：记录日志后接受，但不放入本地缓存，redis恢复后重新检查；false：拒绝，用户需要重新登录
+     */
+    private boolean acceptWhenRevocationUnknown = true;
+
 }
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    /**
+     * 是否开启接口限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地最多保存的令牌桶数量，超过后淘汰最久没有使用的
+     */
+    private long localMaxKeys = 100000;
+
+    /**
+     * 同一个用户催同一个订单的冷却时间（秒），冷却期内重复催单不再查询数据库和通知商家
+     */
+    private long reminderCooldownSeconds = 60;
+
+}
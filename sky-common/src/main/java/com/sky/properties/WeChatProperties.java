@@ -19,5 +19,7 @@ public class WeChatProperties {
     private String weChatPayCertFilePath; //平台证书
     private String notifyUrl; //支付成功的回调地址
     private String refundNotifyUrl; //退款成功的回调地址
+    private int loginMaxConcurrency = 200; //同时进行中的微信登录接口调用数量上限
+    private int loginTimeoutMsec = 3000; //调用微信登录接口的超时时间
 
 }
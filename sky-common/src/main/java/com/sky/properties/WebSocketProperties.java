@@ -0,0 +1,85 @@
+package com.sky.properties;
+
+import com.sky.enumeration.OverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 每个连接最多缓存的待发送消息数量
+     */
+    private int sendQueueCapacity = 256;
+
+    /**
+     * 发送队列已满时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * 单条消息异步发送的超时时间（毫秒），超时后断开连接
+     */
+    private long sendTimeoutMillis = 10000;
+
+    /**
+     * 每个连接最多订阅的主题数量
+     */
+    private int maxTopicsPerSession = 50;
+
+    /**
+     * 是否开启集群模式，开启后消息通过redis发布订阅转发给其他节点上的连接
+     * 默认单节点模式，只发送给本节点的连接
+     */
+    private boolean clusterEnabled = false;
+
+    /**
+     * 集群模式下合并发送到redis的时间间隔（毫秒），同一个间隔内的消息合并成一条redis消息
+     */
+    private long clusterFlushIntervalMillis = 10;
+
+    /**
+     * 集群模式下一条redis消息最多包含的消息数量
+     */
+    private int clusterMaxBatchSize = 500;
+
+    /**
+     * 每个主题在内存中保留的最近消息数量，客户端重连后从这里补发断线期间的消息
+     */
+    private int replayCapacity = 200;
+
+    /**
+     * 最多为多少个主题保留最近消息，超过后淘汰最久没有使用的主题
+     */
+    private long replayMaxTopics = 10000;
+
+    /**
+     * 主题多长时间（分钟）没有新消息和补发请求后丢弃保留的消息
+     */
+    private long replayIdleMinutes = 60;
+
+    /**
+     * 心跳间隔（秒），每个连接按这个间隔发送ping
+     */
+    private long heartbeatIntervalSeconds = 30;
+
+    /**
+     * 连续多少次没有收到pong后断开连接
+     */
+    private int maxMissedPongs = 3;
+
+    /**
+     * 同一主题的消息合并发送的时间窗口（毫秒），0表示不合并
+     * 空闲时第一条消息立即发送，窗口内后续的消息合并成一个json数组发送给开启了合并的连接
+     */
+    private long coalesceWindowMillis = 20;
+
+    /**
+     * 一次合并发送的最多消息数量，达到后不等窗口结束立即发送
+     */
+    private int coalesceMaxMessages = 50;
+
+}
@@ -0,0 +1,152 @@
+package com.sky.utils;
+
+import com.sky.properties.BusinessHoursProperties;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译好的营业时间
+ *
+ * 把每周营业时间和节假日展开为一段时间内按开始时间排序、互不重叠的营业区间，
+ * 判断某一时刻是否营业、是否接单以及查找下一次开店/打烊时间都是一次二分查找，不需要任何IO。
+ * 构建完成后不再修改，可以被多个线程共享。
+ */
+public class BusinessHours {
+
+    //营业区间的开始时间、结束时间、停止接单时间（毫秒时间戳），下标一一对应
+    private final long[] opens;
+    private final long[] closes;
+    private final long[] lastOrders;
+
+    private BusinessHours(long[] opens, long[] closes, long[] lastOrders) {
+        this.opens = opens;
+        this.closes = closes;
+        this.lastOrders = lastOrders;
+    }
+
+    /**
+     * 根据配置编译从from所在日期的前一天开始、horizonDays天之内的营业区间
+     * 从前一天开始是为了包含跨夜营业到今天的区间
+     * @param properties
+     * @param from
+     * @return
+     */
+    public static BusinessHours compile(BusinessHoursProperties properties, long from) {
+        ZoneId zone = ZoneId.of(properties.getZone());
+        LocalDate start = Instant.ofEpochMilli(from).atZone(zone).toLocalDate().minusDays(1);
+
+        List<long[]> intervals = new ArrayList<>();
+        for (int i = 0; i <= properties.getHorizonDays() + 1; i++) {
+            LocalDate date = start.plusDays(i);
+            String ranges = properties.getHolidays().containsKey(date.toString())
+                    ? properties.getHolidays().get(date.toString())
+                    : properties.getWeekly().get(date.getDayOfWeek());
+            for (LocalTime[] range : parse(ranges, date.getDayOfWeek())) {
+                long open = date.atTime(range[0]).atZone(zone).toInstant().toEpochMilli();
+                LocalDate endDate = range[1].isAfter(range[0]) ? date : date.plusDays(1);
+                long close = endDate.atTime(range[1]).atZone(zone).toInstant().toEpochMilli();
+                intervals.add(new long[]{open, close});
+            }
+        }
+
+        //合并重叠或首尾相接的区间
+        intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] interval : intervals) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && interval[0] <= last[1]) {
+                last[1] = Math.max(last[1], interval[1]);
+            } else {
+                merged.add(interval);
+            }
+        }
+
+        long lastOrderMillis = properties.getLastOrderMinutes() * 60_000L;
+        long[] opens = new long[merged.size()];
+        long[] closes = new long[merged.size()];
+        long[] lastOrders = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            opens[i] = merged.get(i)[0];
+            closes[i] = merged.get(i)[1];
+            lastOrders[i] = Math.max(opens[i], closes[i] - lastOrderMillis);
+        }
+        return new BusinessHours(opens, closes, lastOrders);
+    }
+
+    /**
+     * 指定时刻是否在营业时间内
+     * @param time
+     * @return
+     */
+    public boolean isOpen(long time) {
+        int index = floor(time);
+        return index >= 0 && time < closes[index];
+    }
+
+    /**
+     * 指定时刻是否还可以下单（营业中且没有超过停止接单时间）
+     * @param time
+     * @return
+     */
+    public boolean acceptsOrders(long time) {
+        int index = floor(time);
+        return index >= 0 && time < lastOrders[index];
+    }
+
+    /**
+     * 指定时刻之后的下一次开店或打烊时间
+     * @param time
+     * @return 没有编译到下一次变化时返回-1
+     */
+    public long nextTransition(long time) {
+        int index = floor(time);
+        if (index >= 0 && time < closes[index]) {
+            return closes[index];
+        }
+        return index + 1 < opens.length ? opens[index + 1] : -1;
+    }
+
+    /**
+     * 开始时间小于等于time的最后一个区间的下标，不存在时返回-1
+     * @param time
+     * @return
+     */
+    private int floor(long time) {
+        int index = Arrays.binarySearch(opens, time);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * 解析 10:00-14:00,17:00-21:30 格式的营业时间段
+     * @param ranges
+     * @param dayOfWeek
+     * @return
+     */
+    private static List<LocalTime[]> parse(String ranges, DayOfWeek dayOfWeek) {
+        List<LocalTime[]> result = new ArrayList<>();
+        if (ranges == null || ranges.trim().isEmpty()) {
+            return result;
+        }
+        for (String range : ranges.split(",")) {
+            String[] parts = range.trim().split("-");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("营业时间格式错误：" + dayOfWeek + " " + range);
+            }
+            LocalTime open = LocalTime.parse(parts[0].trim());
+            LocalTime close = LocalTime.parse(parts[1].trim());
+            if (open.equals(close)) {
+                throw new IllegalArgumentException("营业时间开始和结束不能相同：" + dayOfWeek + " " + range);
+            }
+            result.add(new LocalTime[]{open, close});
+        }
+        return result;
+    }
+}
@@ -1,32 +1,94 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ *
+ * 所有请求共用一个连接池，连接在请求之间保持长连接复用，不需要每次重新建立TCP和TLS连接。
+ * 异步请求使用单独的非阻塞客户端，等待响应时不占用调用方线程。
+ * 空闲和过期的连接由后台线程定期清理。每个请求按接口记录耗时指标 sky.http.client.requests。
  */
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    //连接池最大连接数、每个域名的最大连接数
+    static final int MAX_TOTAL = 200;
+    static final int MAX_PER_ROUTE = 50;
+
+    //服务端没有返回Keep-Alive时，连接最多保持的时间；空闲超过该时间的连接被清理
+    static final long KEEP_ALIVE_MSEC = 30 * 1000;
+
+    static final String TIMER_NAME = "sky.http.client.requests";
+
+    //服务端返回的Keep-Alive不超过KEEP_ALIVE_MSEC，没有返回时使用KEEP_ALIVE_MSEC
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = (response, context) -> {
+        long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return keepAlive > 0 ? Math.min(keepAlive, KEEP_ALIVE_MSEC) : KEEP_ALIVE_MSEC;
+    };
+
+    private static final CloseableHttpClient HTTP_CLIENT = configure(HttpClients.custom()).build();
+
+    /**
+     * 异步客户端在第一次使用时才创建并启动I/O线程
+     */
+    private static class AsyncClientHolder {
+        private static final CloseableHttpAsyncClient ASYNC_CLIENT = createAsyncClient();
+    }
+
+    /**
+     * 为HttpClientBuilder配置独立的连接池、长连接、空闲连接清理和默认超时时间
+     * @param builder
+     * @return
+     */
+    public static <T extends HttpClientBuilder> T configure(T builder) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        //连接空闲一段时间后，再次使用前先检查是否已经被服务端关闭
+        connectionManager.setValidateAfterInactivity(2000);
+
+        builder.setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+                .evictExpiredConnections()
+                .evictIdleConnections(KEEP_ALIVE_MSEC, TimeUnit.MILLISECONDS)
+                .setDefaultRequestConfig(builderRequestConfig(TIMEOUT_MSEC));
+        return builder;
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,11 +96,18 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        return doGet(url, paramMap, TIMEOUT_MSEC);
+    }
 
+    /**
+     * 发送GET方式请求
+     * @param url
+     * @param paramMap
+     * @param timeoutMsec 连接、获取连接、读取的超时时间
+     * @return
+     */
+    public static String doGet(String url,Map<String,String> paramMap,int timeoutMsec){
         String result = "";
-        CloseableHttpResponse response = null;
 
         try{
             URIBuilder builder = new URIBuilder(url);
@@ -51,73 +120,114 @@ public class HttpClientUtil {
 
             //创建GET请求
             HttpGet httpGet = new HttpGet(uri);
+            httpGet.setConfig(builderRequestConfig(timeoutMsec));
 
-            //发送请求
-            response = httpClient.execute(httpGet);
-
-            //判断响应状态
-            if(response.getStatusLine().getStatusCode() == 200){
-                result = EntityUtils.toString(response.getEntity(),"UTF-8");
-            }
+            //发送请求，只有响应状态为200时才返回响应体
+            result = execute(HTTP_CLIENT, httpGet, true);
         }catch (Exception e){
             e.printStackTrace();
-        }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
 
         return result;
     }
 
     /**
-     * 发送POST方式请求
+     * 异步发送GET方式请求，等待响应期间不占用调用方线程
+     * 回调在异步客户端的I/O线程上执行，后续的阻塞操作需要切换到其他线程池
      * @param url
      * @param paramMap
-     * @return
-     * @throws IOException
+     * @param timeoutMsec 连接、获取连接、读取的超时时间
+     * @return 响应状态为200时为响应体，否则为空字符串
      */
-    public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
-
+    public static CompletableFuture<String> doGetAsync(String url, Map<String, String> paramMap, int timeoutMsec) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        HttpGet httpGet;
         try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
-
-            // 创建参数列表
+            URIBuilder builder = new URIBuilder(url);
             if (paramMap != null) {
-                List<NameValuePair> paramList = new ArrayList();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
+                for (String key : paramMap.keySet()) {
+                    builder.addParameter(key, paramMap.get(key));
                 }
-                // 模拟表单
-                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
-                httpPost.setEntity(entity);
             }
+            httpGet = new HttpGet(builder.build());
+        } catch (URISyntaxException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        httpGet.setConfig(builderRequestConfig(timeoutMsec));
 
-            httpPost.setConfig(builderRequestConfig());
+        String endpoint = httpGet.getURI().getHost() + httpGet.getURI().getPath();
+        long start = System.nanoTime();
+        AsyncClientHolder.ASYNC_CLIENT.execute(httpGet, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                record(httpGet.getMethod(), endpoint, String.valueOf(statusCode), start);
+                try {
+                    if (statusCode != 200) {
+                        EntityUtils.consume(response.getEntity());
+                        future.complete("");
+                    } else {
+                        future.complete(EntityUtils.toString(response.getEntity(), "UTF-8"));
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
 
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+            @Override
+            public void failed(Exception e) {
+                record(httpGet.getMethod(), endpoint, "IO_ERROR", start);
+                future.completeExceptionally(e);
+            }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            @Override
+            public void cancelled() {
+                record(httpGet.getMethod(), endpoint, "CANCELLED", start);
+                future.cancel(false);
             }
+        });
+        return future;
+    }
+
+    /**
+     * 发送POST方式请求
+     * @param url
+     * @param paramMap
+     * @return
+     * @throws IOException
+     */
+    public static String doPost(String url, Map<String, String> paramMap) throws IOException {
+        return doPost(url, paramMap, TIMEOUT_MSEC);
+    }
+
+    /**
+     * 发送POST方式请求
+     * @param url
+     * @param paramMap
+     * @param timeoutMsec 连接、获取连接、读取的超时时间
+     * @return
+     * @throws IOException
+     */
+    public static String doPost(String url, Map<String, String> paramMap, int timeoutMsec) throws IOException {
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
+
+        // 创建参数列表
+        if (paramMap != null) {
+            List<NameValuePair> paramList = new ArrayList();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
+            }
+            // 模拟表单
+            UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
+            httpPost.setEntity(entity);
         }
 
-        return resultString;
+        httpPost.setConfig(builderRequestConfig(timeoutMsec));
+
+        // 执行http请求
+        return execute(HTTP_CLIENT, httpPost, false);
     }
 
     /**
@@ -128,52 +238,93 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
+        return doPost4Json(url, paramMap, TIMEOUT_MSEC);
+    }
 
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
+    /**
+     * 发送POST方式请求
+     * @param url
+     * @param paramMap
+     * @param timeoutMsec 连接、获取连接、读取的超时时间
+     * @return
+     * @throws IOException
+     */
+    public static String doPost4Json(String url, Map<String, String> paramMap, int timeoutMsec) throws IOException {
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
 
-            if (paramMap != null) {
-                //构造json格式数据
-                JSONObject jsonObject = new JSONObject();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    jsonObject.put(param.getKey(),param.getValue());
-                }
-                StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
-                //设置请求编码
-                entity.setContentEncoding("utf-8");
-                //设置数据类型
-                entity.setContentType("application/json");
-                httpPost.setEntity(entity);
+        if (paramMap != null) {
+            //构造json格式数据
+            JSONObject jsonObject = new JSONObject();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                jsonObject.put(param.getKey(),param.getValue());
             }
+            StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
+            //设置请求编码
+            entity.setContentEncoding("utf-8");
+            //设置数据类型
+            entity.setContentType("application/json");
+            httpPost.setEntity(entity);
+        }
 
-            httpPost.setConfig(builderRequestConfig());
+        httpPost.setConfig(builderRequestConfig(timeoutMsec));
 
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+        // 执行http请求
+        return execute(HTTP_CLIENT, httpPost, false);
+    }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * 执行请求并读取响应体，同时按接口记录耗时
+     * 响应体被完整读取后连接自动归还连接池，不能关闭共享的客户端
+     * @param httpClient
+     * @param request
+     * @param onlyOk 为true时只有响应状态为200才返回响应体，否则返回空字符串
+     * @return
+     * @throws IOException
+     */
+    public static String execute(CloseableHttpClient httpClient, HttpRequestBase request, boolean onlyOk) throws IOException {
+        URI uri = request.getURI();
+        String endpoint = uri.getHost() + uri.getPath();
+        String status = "IO_ERROR";
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            status = String.valueOf(statusCode);
+            if (onlyOk && statusCode != 200) {
+                EntityUtils.consume(response.getEntity());
+                return "";
             }
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        } finally {
+            record(request.getMethod(), endpoint, status, start);
         }
+    }
 
-        return resultString;
+    private static void record(String method, String endpoint, String status, long start) {
+        Timer.builder(TIMER_NAME)
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .register(Metrics.globalRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
-    private static RequestConfig builderRequestConfig() {
+
+    private static CloseableHttpAsyncClient createAsyncClient() {
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setMaxConnTotal(MAX_TOTAL)
+                .setMaxConnPerRoute(MAX_PER_ROUTE)
+                .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+                .setDefaultRequestConfig(builderRequestConfig(TIMEOUT_MSEC))
+                .build();
+        client.start();
+        return client;
+    }
+
+    private static RequestConfig builderRequestConfig(int timeoutMsec) {
         return RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
-                .setSocketTimeout(TIMEOUT_MSEC).build();
+                .setConnectTimeout(timeoutMsec)
+                .setConnectionRequestTimeout(timeoutMsec)
+                .setSocketTimeout(timeoutMsec).build();
     }
 
 }
@@ -0,0 +1,82 @@
+package com.sky.utils;
+
+import java.nio.charset.Charset;
+
+/**
+ * 汉字拼音首字母工具类
+ * GB2312一级汉字按照拼音顺序排列，根据汉字的GB2312编码落在哪个区间即可得到拼音首字母，不需要引入拼音字典
+ */
+public class PinyinUtil {
+
+    //每个首字母在GB2312中第一个汉字的编码
+    private static final int[] BOUNDARIES = {
+            45217, 45253, 45761, 46318, 46826, 47010, 47297, 47614, 48119, 49062, 49324, 49896,
+            50371, 50614, 50622, 50906, 51387, 51446, 52218, 52698, 52980, 53689, 54481};
+    private static final char[] LETTERS = {
+            'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'j', 'k', 'l', 'm',
+            'n', 'o', 'p', 'q', 'r', 's', 't', 'w', 'x', 'y', 'z'};
+    //GB2312一级汉字的最后一个编码
+    private static final int LAST_CODE = 55289;
+
+    private static final Charset GB2312 = gb2312();
+
+    /**
+     * 获取字符串的拼音首字母
+     * 英文字母转为小写、数字原样保留，无法识别的字符（二级汉字、符号等）被忽略
+     * @param text
+     * @return
+     */
+    public static String initials(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                if (Character.isLetterOrDigit(c)) {
+                    builder.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            char initial = initial(c);
+            if (initial != 0) {
+                builder.append(initial);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 获取单个汉字的拼音首字母，无法识别时返回0
+     * @param c
+     * @return
+     */
+    public static char initial(char c) {
+        if (GB2312 == null) {
+            return 0;
+        }
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = (bytes[0] & 0xff) << 8 | (bytes[1] & 0xff);
+        if (code < BOUNDARIES[0] || code > LAST_CODE) {
+            return 0;
+        }
+        for (int i = BOUNDARIES.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+
+    private static Charset gb2312() {
+        try {
+            return Charset.forName("GB2312");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
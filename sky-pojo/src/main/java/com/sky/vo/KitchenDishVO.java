@@ -0,0 +1,24 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 后厨队列中按菜品汇总的待制作份数
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenDishVO implements Serializable {
+
+    //菜品或套餐名称，有口味时带上口味
+    private String name;
+
+    //待制作份数
+    private Integer number;
+}
@@ -0,0 +1,44 @@
+package com.sky.vo;
+
+import com.sky.entity.OrderDetail;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 后厨队列中的订单
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenOrderVO implements Serializable {
+
+    private Long orderId;
+
+    //订单号
+    private String number;
+
+    //订单状态 2待接单 3已接单
+    private Integer status;
+
+    //备注
+    private String remark;
+
+    //预计送达时间
+    private LocalDateTime estimatedDeliveryTime;
+
+    //最晚开始制作时间，队列按这个时间排序
+    private LocalDateTime startBy;
+
+    //预计备餐分钟数
+    private Integer prepMinutes;
+
+    //订单明细
+    private List<OrderDetail> items;
+}
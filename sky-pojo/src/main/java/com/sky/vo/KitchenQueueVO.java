@@ -0,0 +1,25 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 后厨出餐队列
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenQueueVO implements Serializable {
+
+    //按最晚开始制作时间排列的订单
+    private List<KitchenOrderVO> orders;
+
+    //按待制作份数从多到少排列的菜品汇总
+    private List<KitchenDishVO> dishes;
+}
@@ -0,0 +1,54 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 菜单增量同步结果
+ * full为true时表示变更日志已经被压缩或者有分类被禁用、删除，返回的是完整菜单，客户端需要整体替换本地数据；
+ * 否则客户端按id合并新增/修改的数据，并删除removed中的数据。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuDeltaVO implements Serializable {
+
+    //同步之后客户端应该保存的版本号
+    private Long version;
+
+    //是否为全量数据
+    private Boolean full;
+
+    //新增或修改的分类
+    @Builder.Default
+    private List<Category> categories = new ArrayList<>();
+
+    //新增或修改的菜品，包含口味
+    @Builder.Default
+    private List<DishVO> dishes = new ArrayList<>();
+
+    //新增或修改的套餐
+    @Builder.Default
+    private List<Setmeal> setmeals = new ArrayList<>();
+
+    //已删除、停用或者不再可见的分类id，分类被禁用或删除时返回全量数据，增量结果中为空，保留以兼容客户端
+    @Builder.Default
+    private List<Long> removedCategoryIds = new ArrayList<>();
+
+    //已删除、停售或者不再可见的菜品id
+    @Builder.Default
+    private List<Long> removedDishIds = new ArrayList<>();
+
+    //已删除、停售或者不再可见的套餐id
+    @Builder.Default
+    private List<Long> removedSetmealIds = new ArrayList<>();
+}
@@ -0,0 +1,26 @@
+package com.sky.vo;
+
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 菜单搜索结果，菜品和套餐分别按相关度从高到低排列
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuSearchVO implements Serializable {
+
+    //命中的起售中菜品，包含口味
+    private List<DishVO> dishes;
+
+    //命中的起售中套餐
+    private List<Setmeal> setmeals;
+}
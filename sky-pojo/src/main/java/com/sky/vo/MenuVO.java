@@ -0,0 +1,33 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 整个菜单的快照：所有启用的分类、起售中的菜品（含口味）和套餐
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //快照对应的菜单版本号
+    private Long version;
+
+    //启用的分类
+    private List<Category> categories;
+
+    //起售中的菜品，包含口味，客户端按照categoryId分组
+    private List<DishVO> dishes;
+
+    //起售中的套餐，客户端按照categoryId分组
+    private List<Setmeal> setmeals;
+}
@@ -0,0 +1,27 @@
+package com.sky.annotation;
+
+import com.sky.enumeration.RateLimitScope;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流，每个周期内最多允许permits次请求，超过后抛出RateLimitException
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+    //每个周期允许的请求次数
+    int permits();
+
+    //周期（秒）
+    int periodSeconds() default 1;
+
+    //计数的范围
+    RateLimitScope scope() default RateLimitScope.USER;
+
+    //是否在所有节点之间共享计数（redis滑动窗口），否则每个节点单独使用本地令牌桶
+    boolean cluster() default false;
+}
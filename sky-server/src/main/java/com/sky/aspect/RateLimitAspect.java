@@ -0,0 +1,162 @@
+package com.sky.aspect;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.annotation.RateLimit;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.exception.RateLimitException;
+import com.sky.properties.RateLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自定义切面类，实现接口限流
+ *
+ * 本地限流使用令牌桶：容量为permits，每个周期补充permits个令牌，允许短时间的突发请求。
+ * 集群限流使用redis有序集合实现的滑动窗口，lua脚本中删除窗口之前的记录、计数并写入本次请求，保证原子性，
+ * redis不可用时退回到本地令牌桶，不会因为限流组件故障拒绝所有请求。
+ */
+@Aspect
+@Component
+@Slf4j
+public class RateLimitAspect {
+
+    private static final String KEY_PREFIX = "rate:";
+
+    //KEYS[1]：限流key；ARGV：当前毫秒时间、窗口毫秒数、允许次数、本次请求的唯一标识
+    private static final RedisScript<Long> SLIDING_WINDOW = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, tonumber(ARGV[1]) - tonumber(ARGV[2])) " +
+            "if redis.call('ZCARD', KEYS[1]) < tonumber(ARGV[3]) then " +
+            "  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[4]) " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "  return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    public void init() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(rateLimitProperties.getLocalMaxKeys())
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+    }
+
+    @Around("@annotation(rateLimit)")
+    public Object limit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
+        if (!rateLimitProperties.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String name = signature.getDeclaringType().getName() + "." + signature.getName();
+        String key = KEY_PREFIX + name + ":" + scopeKey(rateLimit);
+
+        boolean allowed = rateLimit.cluster() ? tryAcquireCluster(key, rateLimit) : tryAcquireLocal(key, rateLimit);
+        if (!allowed) {
+            meterRegistry.counter("sky.rate.limited", "method", name).increment();
+            throw new RateLimitException(MessageConstant.TOO_MANY_REQUESTS);
+        }
+        return joinPoint.proceed();
+    }
+
+    private boolean tryAcquireLocal(String key, RateLimit rateLimit) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(rateLimit.permits(), rateLimit.periodSeconds()));
+        return bucket.tryAcquire();
+    }
+
+    private boolean tryAcquireCluster(String key, RateLimit rateLimit) {
+        try {
+            Long result = stringRedisTemplate.execute(SLIDING_WINDOW, Collections.singletonList(key),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(TimeUnit.SECONDS.toMillis(rateLimit.periodSeconds())),
+                    String.valueOf(rateLimit.permits()),
+                    UUID.randomUUID().toString());
+            return result != null && result == 1L;
+        } catch (RuntimeException e) {
+            log.warn("redis限流失败，使用本地限流：{}", e.getMessage());
+            return tryAcquireLocal(key, rateLimit);
+        }
+    }
+
+    /**
+     * 计数范围对应的key
+     */
+    private String scopeKey(RateLimit rateLimit) {
+        switch (rateLimit.scope()) {
+            case GLOBAL:
+                return "global";
+            case USER:
+                Long currentId = BaseContext.getCurrentId();
+                if (currentId != null) {
+                    return "user:" + currentId;
+                }
+                return "ip:" + clientIp();
+            default:
+                return "ip:" + clientIp();
+        }
+    }
+
+    private String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest().getRemoteAddr();
+        }
+        return "unknown";
+    }
+
+    /**
+     * 令牌桶，按经过的时间补充令牌
+     */
+    private static class TokenBucket {
+
+        private final double capacity;
+        //每纳秒补充的令牌数
+        private final double refillPerNanos;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(int permits, int periodSeconds) {
+            this.capacity = permits;
+            this.refillPerNanos = permits / (double) TimeUnit.SECONDS.toNanos(periodSeconds);
+            this.tokens = permits;
+            this.lastRefill = System.nanoTime();
+        }
+
+        private synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNanos);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.sky.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 存放long类型id的布隆过滤器，线程安全
+ *
+ * 位的编号和redis位图保持一致：第i位对应redis位图的偏移量i（字节内从高位到低位），
+ * 这样本地位图和redis位图可以直接相互合并。
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    //位图的总位数
+    private final long numBits;
+
+    //每个id使用的哈希函数个数
+    private final int numHashes;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        //按64位对齐，保证和字节数组互相转换时没有残余位
+        this.numBits = Math.max(64, (bits + 63) / 64 * 64);
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.words = new AtomicLongArray((int) (numBits / 64));
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 计算id对应的所有位偏移量
+     * @param id
+     * @return
+     */
+    public long[] offsets(long id) {
+        long hash = mix(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long[] offsets = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            long combined = h1 + (long) i * h2;
+            offsets[i] = (combined & Long.MAX_VALUE) % numBits;
+        }
+        return offsets;
+    }
+
+    public void put(long id) {
+        for (long offset : offsets(id)) {
+            setBit(offset);
+        }
+    }
+
+    public boolean mightContain(long id) {
+        for (long offset : offsets(id)) {
+            if (!getBit(offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并redis中的位图（按位或）
+     * @param bitmap
+     */
+    public void merge(byte[] bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        int length = (int) Math.min(bitmap.length, numBits / 8);
+        for (int i = 0; i < length; i++) {
+            int b = bitmap[i] & 0xFF;
+            if (b == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < 8; bit++) {
+                if ((b & (0x80 >>> bit)) != 0) {
+                    setBit((long) i * 8 + bit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 转换为redis位图格式的字节数组
+     * @return
+     */
+    public byte[] toBitmap() {
+        byte[] bitmap = new byte[(int) (numBits / 8)];
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            if (word == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < 64; bit++) {
+                if ((word & (1L << bit)) != 0) {
+                    long offset = (long) w * 64 + bit;
+                    bitmap[(int) (offset / 8)] |= (byte) (0x80 >>> (offset % 8));
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    private void setBit(long offset) {
+        int index = (int) (offset >>> 6);
+        long mask = 1L << (offset & 63);
+        long old;
+        do {
+            old = words.get(index);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(index, old, old | mask));
+    }
+
+    private boolean getBit(long offset) {
+        return (words.get((int) (offset >>> 6)) & (1L << (offset & 63))) != 0;
+    }
+
+    /**
+     * 64位混淆函数（splitmix64），让连续的自增id也能均匀分布
+     */
+    private static long mix(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Setmeal;
+import com.sky.result.Result;
+import com.sky.service.CategoryService;
+import com.sky.service.SetmealService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 注册各个缓存后台刷新使用的加载函数
+ * 加载的数据必须和对应 @Cacheable 方法缓存的数据一致
+ */
+@Component
+public class CacheRefreshers {
+
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private SetmealService setmealService;
+
+    @PostConstruct
+    public void init() {
+        if (!(cacheManager instanceof CoalescingCacheManager)) {
+            return;
+        }
+        CoalescingCacheManager manager = (CoalescingCacheManager) cacheManager;
+        manager.registerRefresher("categoryCache", this::loadCategories);
+        manager.registerRefresher("setmealCache", this::loadSetmeals);
+    }
+
+    /**
+     * 对应用户端 CategoryController.list，key为分类类型，0表示不限类型
+     */
+    private Object loadCategories(Object key) {
+        Integer type = (Integer) key;
+        return Result.success(categoryService.list(type == 0 ? null : type));
+    }
+
+    /**
+     * 对应用户端 SetmealController.list，key为分类id
+     */
+    private Object loadSetmeals(Object key) {
+        Setmeal setmeal = Setmeal.builder()
+                .categoryId((Long) key)
+                .status(StatusConstant.ENABLE)
+                .build();
+        return Result.success(setmealService.list(setmeal));
+    }
+}
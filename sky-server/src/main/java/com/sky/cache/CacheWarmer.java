@@ -0,0 +1,147 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import com.sky.properties.CacheProperties;
+import com.sky.result.Result;
+import com.sky.service.CategoryService;
+import com.sky.service.MenuService;
+import com.sky.vo.DishVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 启动时预热菜单相关缓存
+ *
+ * Spring Boot在所有ApplicationRunner执行完成之后才发布ReadinessState.ACCEPTING_TRAFFIC，
+ * 因此预热期间/actuator/health/readiness返回未就绪，负载均衡不会把流量转发过来。
+ * 预热超时后不再等待，剩余的缓存由正常请求按需加载。
+ */
+@Component
+@Slf4j
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final String TIMER_NAME = "sky.cache.warmup";
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private MenuService menuService;
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private VersionedCache versionedCache;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    @Qualifier("cacheWarmUpExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!cacheProperties.isWarmUpEnabled()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            //分类缓存：不传type、菜品分类、套餐分类
+            CompletableFuture<?> categories = CompletableFuture.allOf(
+                    timed("category", () -> warmCategories(null), executor),
+                    timed("category", () -> warmCategories(1), executor),
+                    timed("category", () -> warmCategories(2), executor));
+
+            //菜单快照构建完成后，各分类下的菜品和套餐直接从快照中取，不需要再逐个分类查询数据库
+            CompletableFuture<MenuSnapshot> snapshot = CompletableFuture.supplyAsync(() -> {
+                long begin = System.nanoTime();
+                MenuSnapshot menuSnapshot = menuService.getSnapshot();
+                record("menu", begin);
+                return menuSnapshot;
+            }, executor);
+            CompletableFuture<?> dishes = snapshot.thenAcceptAsync(this::warmDishes, executor);
+            CompletableFuture<?> setmeals = snapshot.thenAcceptAsync(this::warmSetmeals, executor);
+
+            CompletableFuture.allOf(categories, dishes, setmeals)
+                    .get(cacheProperties.getWarmUpTimeoutSeconds(), TimeUnit.SECONDS);
+            log.info("缓存预热完成，耗时：{}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            log.warn("缓存预热超过{}秒未完成，不再等待", cacheProperties.getWarmUpTimeoutSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            //预热失败不影响启动，缓存由正常请求按需加载
+            log.warn("缓存预热失败：{}", e.getMessage(), e);
+        } finally {
+            //超时未完成的任务继续在后台执行，完成后照常写入缓存
+            record("total", start);
+        }
+    }
+
+    private void warmCategories(Integer type) {
+        List<Category> list = categoryService.list(type);
+        cache("categoryCache").put(type == null ? 0 : type, Result.success(list));
+    }
+
+    private void warmDishes(MenuSnapshot snapshot) {
+        long begin = System.nanoTime();
+        Map<Long, List<DishVO>> dishMap = snapshot.getMenu().getDishes().stream()
+                .collect(Collectors.groupingBy(DishVO::getCategoryId, LinkedHashMap::new, Collectors.toList()));
+        dishMap.forEach((categoryId, list) ->
+                versionedCache.put(versionedCache.key(CacheConstant.DISH_NAMESPACE, categoryId), list));
+        record("dish", begin);
+    }
+
+    private void warmSetmeals(MenuSnapshot snapshot) {
+        long begin = System.nanoTime();
+        Map<Long, List<Setmeal>> setmealMap = snapshot.getMenu().getSetmeals().stream()
+                .collect(Collectors.groupingBy(Setmeal::getCategoryId, LinkedHashMap::new, Collectors.toList()));
+        Cache cache = cache("setmealCache");
+        setmealMap.forEach((categoryId, list) -> cache.put(categoryId, Result.success(list)));
+        record("setmeal", begin);
+    }
+
+    private CompletableFuture<Void> timed(String name, Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            long begin = System.nanoTime();
+            task.run();
+            record(name, begin);
+        }, executor);
+    }
+
+    private void record(String name, long begin) {
+        Timer.builder(TIMER_NAME)
+                .description("启动时缓存预热耗时")
+                .tag("cache", name)
+                .register(meterRegistry)
+                .record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+    }
+
+    private Cache cache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            throw new IllegalStateException("缓存不存在：" + name);
+        }
+        return cache;
+    }
+}
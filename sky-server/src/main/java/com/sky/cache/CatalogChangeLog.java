@@ -0,0 +1,151 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.enumeration.CatalogEntityType;
+import com.sky.event.CatalogChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 菜单目录变更日志
+ *
+ * 菜品、口味、套餐、分类每发生一次变更，目录版本号单调递增，
+ * 并把 类型:id 以最新的版本号为分数写入有序集合。客户端携带自己的版本号即可查询之后变更过的实体。
+ * 有序集合超过上限时压缩掉最早的记录，并记录被压缩的最大版本号，低于它的客户端需要全量同步。
+ * 写入日志之后在当前节点发布 {@link CatalogChangedEvent}，供本地的索引、缓存及时更新。
+ */
+@Component
+@Slf4j
+public class CatalogChangeLog {
+
+    /**
+     * KEYS[1] 版本号  KEYS[2] 变更日志  KEYS[3] 压缩水位
+     * ARGV[1] 日志上限  ARGV[2..n] 变更的实体 类型:id
+     */
+    private static final String RECORD_SCRIPT =
+            "local n = #ARGV - 1\n" +
+            "local last = redis.call('INCRBY', KEYS[1], n)\n" +
+            "local first = last - n + 1\n" +
+            "for i = 2, #ARGV do\n" +
+            "  redis.call('ZADD', KEYS[2], first + i - 2, ARGV[i])\n" +
+            "end\n" +
+            "local overflow = redis.call('ZCARD', KEYS[2]) - tonumber(ARGV[1])\n" +
+            "if overflow > 0 then\n" +
+            "  local removed = redis.call('ZRANGE', KEYS[2], overflow - 1, overflow - 1, 'WITHSCORES')\n" +
+            "  redis.call('ZREMRANGEBYRANK', KEYS[2], 0, overflow - 1)\n" +
+            "  local watermark = tonumber(redis.call('GET', KEYS[3]) or '0')\n" +
+            "  if tonumber(removed[2]) > watermark then\n" +
+            "    redis.call('SET', KEYS[3], removed[2])\n" +
+            "  end\n" +
+            "end\n" +
+            "return last";
+
+    private static final DefaultRedisScript<Long> SCRIPT = new DefaultRedisScript<>(RECORD_SCRIPT, Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 记录实体变更
+     * 如果当前处于事务中，在事务提交之后才写入日志，避免客户端在提交前读到新版本号却查到旧数据
+     * @param type
+     * @param ids
+     */
+    public void record(CatalogEntityType type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> changedIds = new ArrayList<>(ids);
+        List<String> members = new ArrayList<>(ids.size() + 1);
+        members.add(String.valueOf(CacheConstant.CATALOG_CHANGES_MAX_SIZE));
+        for (Long id : ids) {
+            members.add(type.name() + ":" + id);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(members);
+                    applicationEventPublisher.publishEvent(new CatalogChangedEvent(type, changedIds));
+                }
+            });
+        } else {
+            append(members);
+            applicationEventPublisher.publishEvent(new CatalogChangedEvent(type, changedIds));
+        }
+    }
+
+    /**
+     * 记录单个实体变更
+     * @param type
+     * @param id
+     */
+    public void record(CatalogEntityType type, Long id) {
+        record(type, Collections.singletonList(id));
+    }
+
+    /**
+     * 查询当前的目录版本号
+     * @return
+     */
+    public long currentVersion() {
+        String version = stringRedisTemplate.opsForValue().get(CacheConstant.CATALOG_VERSION_KEY);
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    /**
+     * 查询 (since, upTo] 区间内变更过的实体
+     * @param since 客户端当前的版本号
+     * @param upTo 服务端快照的版本号
+     * @return 按类型分组的实体id，变更日志已经被压缩、无法给出完整增量时返回null
+     */
+    public Map<CatalogEntityType, Set<Long>> changesSince(long since, long upTo) {
+        String watermark = stringRedisTemplate.opsForValue().get(CacheConstant.CATALOG_COMPACTED_KEY);
+        if (since > upTo || (watermark != null && since < Long.parseLong(watermark))) {
+            return null;
+        }
+
+        Map<CatalogEntityType, Set<Long>> changes = new LinkedHashMap<>();
+        if (since == upTo) {
+            return changes;
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(CacheConstant.CATALOG_CHANGES_KEY, since + 1, upTo);
+        if (tuples == null) {
+            return changes;
+        }
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            String[] parts = tuple.getValue().split(":");
+            CatalogEntityType type = CatalogEntityType.valueOf(parts[0]);
+            changes.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(Long.valueOf(parts[1]));
+        }
+        return changes;
+    }
+
+    private void append(List<String> members) {
+        Long version = stringRedisTemplate.execute(SCRIPT,
+                Arrays.asList(CacheConstant.CATALOG_VERSION_KEY, CacheConstant.CATALOG_CHANGES_KEY, CacheConstant.CATALOG_COMPACTED_KEY),
+                members.toArray());
+        log.debug("菜单目录变更：{}，当前版本：{}", members.subList(1, members.size()), version);
+    }
+}
@@ -0,0 +1,212 @@
+package com.sky.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 合并并发加载请求的缓存装饰器（single-flight）
+ *
+ * 对于同一个key，当前节点上同一时刻最多只有一个线程去数据库加载数据，其余并发请求等待同一个Future的结果。
+ * 只有 @Cacheable(sync = true) 的读操作会走 get(key, valueLoader)，从而被合并。
+ *
+ * 开启stale-while-revalidate后，缓存被清理时如果本地还保留着不太旧的旧值，直接返回旧值并在后台异步刷新，
+ * 避免管理端一次 allEntries 清理让所有请求同时等待数据库。
+ * 后台刷新使用通过CoalescingCacheManager注册的加载函数，不使用缓存切面传入的valueLoader：
+ * 调用方返回之后valueLoader所在的方法调用已经结束，不能在其他线程上再次执行。没有注册加载函数的缓存不返回旧值。
+ */
+@Slf4j
+public class CoalescingCache implements Cache {
+
+    private final Cache delegate;
+
+    //正在加载中的key
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    //最近一次加载的值，用于stale-while-revalidate，为null表示未开启
+    private final Map<Object, StaleEntry> staleEntries;
+
+    private final long staleTtlMillis;
+
+    private final Executor refreshExecutor;
+
+    //后台刷新时根据key重新加载数据，为null时不返回旧值
+    private volatile Function<Object, ?> refresher;
+
+    public CoalescingCache(Cache delegate, boolean staleWhileRevalidate, long staleTtlMillis,
+                           int maxStaleEntries, Executor refreshExecutor) {
+        this.delegate = delegate;
+        this.staleTtlMillis = staleTtlMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.staleEntries = staleWhileRevalidate ? Collections.synchronizedMap(new LinkedHashMap<Object, StaleEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, StaleEntry> eldest) {
+                return size() > maxStaleEntries;
+            }
+        }) : null;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        Function<Object, ?> refresher = this.refresher;
+        if (staleEntries != null && refresher != null) {
+            StaleEntry stale = staleEntries.get(key);
+            if (stale != null && System.currentTimeMillis() - stale.loadedAt <= staleTtlMillis) {
+                //返回旧值，由后台线程刷新，已经有线程在加载时不再重复提交
+                if (!inFlight.containsKey(key)) {
+                    try {
+                        refreshExecutor.execute(() -> load(key, () -> refresher.apply(key)));
+                    } catch (RejectedExecutionException e) {
+                        log.warn("缓存{}后台刷新任务被拒绝：{}", getName(), key);
+                    }
+                }
+                return (T) stale.value;
+            }
+        }
+
+        return (T) join(key, valueLoader, load(key, valueLoader));
+    }
+
+    /**
+     * 设置后台刷新使用的加载函数
+     * @param refresher
+     */
+    public void setRefresher(Function<Object, ?> refresher) {
+        this.refresher = refresher;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        remember(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        //保留本地旧值，清理后的第一次读取可以直接使用它
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    /**
+     * 加载数据，同一个key只有第一个到达的线程真正执行valueLoader
+     * @param key
+     * @param valueLoader
+     * @return
+     */
+    private CompletableFuture<Object> load(Object key, Callable<?> valueLoader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            //可能在拿到加载权之前其他线程刚刚写入了缓存
+            ValueWrapper wrapper = delegate.get(key);
+            Object value;
+            if (wrapper != null) {
+                value = wrapper.get();
+            } else {
+                value = valueLoader.call();
+                delegate.put(key, value);
+            }
+            remember(key, value);
+            future.complete(value);
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return future;
+    }
+
+    private Object join(Object key, Callable<?> valueLoader, CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ValueRetrievalException(key, valueLoader, cause);
+        }
+    }
+
+    private void remember(Object key, Object value) {
+        if (staleEntries != null) {
+            staleEntries.put(key, new StaleEntry(value, System.currentTimeMillis()));
+        }
+    }
+
+    private static class StaleEntry {
+        private final Object value;
+        private final long loadedAt;
+
+        private StaleEntry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.sky.cache;
+
+import com.sky.properties.CacheProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * 为底层CacheManager创建的每个缓存加上请求合并能力
+ */
+public class CoalescingCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+
+    private final CacheProperties cacheProperties;
+
+    private final Executor refreshExecutor;
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public CoalescingCacheManager(CacheManager delegate, CacheProperties cacheProperties, Executor refreshExecutor) {
+        this.delegate = delegate;
+        this.cacheProperties = cacheProperties;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        if (target == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new CoalescingCache(target,
+                cacheProperties.isStaleWhileRevalidate(),
+                cacheProperties.getStaleTtlSeconds() * 1000,
+                cacheProperties.getMaxStaleEntries(),
+                refreshExecutor));
+    }
+
+    /**
+     * 注册缓存后台刷新使用的加载函数，stale-while-revalidate只对注册了加载函数的缓存生效
+     * @param name 缓存名称
+     * @param refresher 根据key加载数据，返回值与 @Cacheable 方法的返回值相同
+     */
+    public void registerRefresher(String name, Function<Object, ?> refresher) {
+        Cache cache = getCache(name);
+        if (cache instanceof CoalescingCache) {
+            ((CoalescingCache) cache).setRefresher(refresher);
+        }
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
@@ -0,0 +1,187 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.entity.User;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * redis缓存值的紧凑二进制序列化器
+ *
+ * 格式：魔数(1字节) + 格式版本(1字节) + 标志位(1字节) + [压缩前长度(4字节)] + 数据
+ *     标志位 bit0：数据经过LZ4压缩  bit1：缓存的是null值
+ *     数据：Smile（二进制json），只在声明类型不确定的位置写入类型信息，日期时间写成数字数组
+ * 读取时兼容没有头部的jdk序列化数据，滚动升级期间新旧格式可以共存。
+ */
+@Slf4j
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xC7;
+    //版本1在每个值上都写入类型信息，日期时间写成字符串，版本2不再兼容读取
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte FLAG_LZ4 = 0x01;
+    private static final byte FLAG_NULL_VALUE = 0x02;
+    private static final int HEADER_LENGTH = 3;
+
+    //jdk序列化流的魔数 0xACED
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    /**
+     * 允许反序列化的类型，缓存新的类型时需要加在这里
+     */
+    static final List<Class<?>> ALLOWED_TYPES = Collections.unmodifiableList(Arrays.asList(
+            //缓存的业务对象
+            Result.class, Category.class, Setmeal.class, Dish.class, DishFlavor.class, DishVO.class, User.class,
+            //集合
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, HashSet.class, LinkedHashSet.class,
+            Collections.emptyList().getClass(), Collections.emptyMap().getClass(), Collections.emptySet().getClass(),
+            Collections.singletonList(null).getClass(), Arrays.asList().getClass(),
+            Collections.unmodifiableList(new ArrayList<>()).getClass(),
+            Collections.unmodifiableList(new LinkedList<>()).getClass(),
+            //字段中使用的值类型
+            String.class, Integer.class, Long.class, Double.class, Boolean.class,
+            BigDecimal.class, LocalDateTime.class, LocalDate.class));
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter objectWriter;
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    //是否以jdk格式写入
+    private final boolean writeJdk;
+
+    private final int compressThresholdBytes;
+
+    public CompactRedisSerializer(boolean writeJdk, int compressThresholdBytes) {
+        this.writeJdk = writeJdk;
+        this.compressThresholdBytes = compressThresholdBytes;
+
+        //重复的类名等字符串值写成回引用
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        ObjectMapper mapper = new ObjectMapper(factory);
+        //日期时间保持默认的数字数组格式
+        mapper.registerModule(new JavaTimeModule());
+        //类增加或删除字段后旧数据仍然可以读取
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        //在声明类型为Object、接口等非final类型的位置写入类型信息，反序列化时还原为原来的类型，
+        //Long、String、LocalDateTime等final类型的字段不写；只允许缓存中实际存放的类型，其他类型一律拒绝
+        BasicPolymorphicTypeValidator.Builder validator = BasicPolymorphicTypeValidator.builder();
+        for (Class<?> type : ALLOWED_TYPES) {
+            validator.allowIfSubType(type);
+        }
+        mapper.activateDefaultTyping(validator.build(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        this.objectMapper = mapper;
+        //按Object写入根对象，根对象也带上类型信息
+        this.objectWriter = mapper.writerFor(Object.class);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (writeJdk) {
+            return jdkSerializer.serialize(value);
+        }
+        if (value instanceof NullValue) {
+            return new byte[]{MAGIC, FORMAT_VERSION, FLAG_NULL_VALUE};
+        }
+
+        byte[] data;
+        try {
+            data = objectWriter.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("缓存值序列化失败：" + value.getClass().getName(), e);
+        }
+
+        if (data.length < compressThresholdBytes) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + data.length);
+            buffer.put(MAGIC).put(FORMAT_VERSION).put((byte) 0).put(data);
+            return buffer.array();
+        }
+
+        int maxLength = compressor.maxCompressedLength(data.length);
+        byte[] out = new byte[HEADER_LENGTH + 4 + maxLength];
+        ByteBuffer.wrap(out).put(MAGIC).put(FORMAT_VERSION).put(FLAG_LZ4).putInt(data.length);
+        int compressedLength = compressor.compress(data, 0, data.length, out, HEADER_LENGTH + 4, maxLength);
+        byte[] result = new byte[HEADER_LENGTH + 4 + compressedLength];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        //升级前写入的jdk序列化数据
+        if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) {
+            throw new SerializationException("无法识别的缓存值格式");
+        }
+        if (bytes[1] != FORMAT_VERSION) {
+            //其他版本写入的数据，当作缓存未命中处理，由调用方重新加载
+            log.warn("不支持的缓存值格式版本：{}", bytes[1]);
+            return null;
+        }
+
+        byte flags = bytes[2];
+        if ((flags & FLAG_NULL_VALUE) != 0) {
+            return NullValue.INSTANCE;
+        }
+        try {
+            if ((flags & FLAG_LZ4) != 0) {
+                int length = ByteBuffer.wrap(bytes, HEADER_LENGTH, 4).getInt();
+                byte[] data = new byte[length];
+                decompressor.decompress(bytes, HEADER_LENGTH + 4, data, 0, length);
+                return objectMapper.readValue(data, Object.class);
+            }
+            return objectMapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("缓存值反序列化失败", e);
+        }
+    }
+}
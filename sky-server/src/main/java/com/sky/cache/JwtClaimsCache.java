@@ -0,0 +1,170 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.MessageConstant;
+import com.sky.exception.UserNotLoginException;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验的jwt令牌缓存
+ *
+ * 同一个令牌会被连续使用很多天，第一次校验签名之后，以令牌的SHA-256摘要为key缓存其中的id和过期时间，
+ * 之后的请求只需要计算一次摘要，不再重复校验签名和解析json。缓存到令牌过期或最多一小时。
+ * 撤销令牌时写入redis（过期时间与令牌相同）并通过发布订阅通知所有节点删除本地缓存，
+ * 缓存未命中、重新校验签名时会检查令牌是否已经被撤销，redis不可用时按sky.jwt.accept-when-revocation-unknown处理。
+ */
+@Component
+@Slf4j
+public class JwtClaimsCache implements MessageListener {
+
+    //本地缓存的最长时间和最大数量
+    private static final long MAX_CACHE_MILLIS = 60 * 60 * 1000L;
+    private static final long MAX_SIZE = 100_000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private final Cache<String, VerifiedToken> verified = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                    long millis = Math.min(value.expiration - System.currentTimeMillis(), MAX_CACHE_MILLIS);
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CacheConstant.JWT_REVOKED_CHANNEL));
+    }
+
+    /**
+     * 校验令牌并返回其中的id
+     * @param secretKey 签名秘钥
+     * @param claimName 保存id的声明名称，同时区分管理端和用户端的令牌
+     * @param token
+     * @return
+     */
+    public Long verify(String secretKey, String claimName, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new UserNotLoginException(MessageConstant.USER_NOT_LOGIN);
+        }
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        if (cached != null && cached.claimName.equals(claimName) && cached.expiration > System.currentTimeMillis()) {
+            return cached.id;
+        }
+
+        //缓存未命中，完整校验签名和过期时间
+        Claims claims = JwtUtil.parseJWT(secretKey, token);
+        Long id = Long.valueOf(claims.get(claimName).toString());
+        Boolean revoked;
+        try {
+            revoked = stringRedisTemplate.hasKey(CacheConstant.JWT_REVOKED_KEY_PREFIX + digest);
+        } catch (RuntimeException e) {
+            if (!jwtProperties.isAcceptWhenRevocationUnknown()) {
+                log.warn("无法检查令牌是否已撤销，拒绝请求：{}", e.getMessage());
+                throw new UserNotLoginException(MessageConstant.USER_NOT_LOGIN);
+            }
+            //签名有效，按未撤销处理，但不放入本地缓存，下次请求重新检查
+            log.warn("无法检查令牌是否已撤销，按签名校验结果接受：{}", e.getMessage());
+            return id;
+        }
+        if (Boolean.TRUE.equals(revoked)) {
+            throw new UserNotLoginException(MessageConstant.USER_NOT_LOGIN);
+        }
+        Date expiration = claims.getExpiration();
+        long expirationMillis = expiration == null ? System.currentTimeMillis() + MAX_CACHE_MILLIS : expiration.getTime();
+        verified.put(digest, new VerifiedToken(claimName, id, expirationMillis));
+        return id;
+    }
+
+    /**
+     * 撤销令牌，例如退出登录，之后所有节点都不再接受该令牌
+     * @param token
+     */
+    public void revoke(String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        //令牌的剩余有效期未知时，按照最长的令牌有效期保存撤销记录
+        long ttl = cached != null ? cached.expiration - System.currentTimeMillis()
+                : Math.max(jwtProperties.getAdminTtl(), jwtProperties.getUserTtl());
+        if (ttl > 0) {
+            stringRedisTemplate.opsForValue().set(CacheConstant.JWT_REVOKED_KEY_PREFIX + digest, "1", ttl, TimeUnit.MILLISECONDS);
+        }
+        verified.invalidate(digest);
+        stringRedisTemplate.convertAndSend(CacheConstant.JWT_REVOKED_CHANNEL, digest);
+    }
+
+    /**
+     * 收到其他节点撤销的令牌摘要
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        verified.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class VerifiedToken {
+
+        private final String claimName;
+        private final Long id;
+        private final long expiration;
+
+        private VerifiedToken(String claimName, Long id, long expiration) {
+            this.claimName = claimName;
+            this.id = id;
+            this.expiration = expiration;
+        }
+    }
+}
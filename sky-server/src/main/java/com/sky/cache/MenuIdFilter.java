@@ -0,0 +1,310 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * 菜品、套餐id的布隆过滤器，防止不存在的id穿透到缓存和数据库
+ *
+ * 启动时从数据库加载全部id构建本地位图，并通过BITOP OR合并到redis位图中。
+ * 判断只使用本地位图，不存在的id不会产生任何网络请求。
+ * 新增菜品、套餐时在事务提交后设置本地位和redis位，并在频道上通知其他节点设置各自的本地位；
+ * 构建期间新增的id先记录下来，新过滤器替换旧过滤器之后再补充进去，全量重建覆盖redis位图时不会丢失；
+ * 另外定时把redis位图合并到本地，防止断线期间丢失通知。
+ * 构建失败（redis或数据库不可用）时过滤器不生效，所有id都放行，由定时任务重试构建。
+ * 布隆过滤器不支持删除，删除的id依靠每天凌晨的全量重建清理。
+ */
+@Component
+@Slf4j
+public class MenuIdFilter implements MessageListener {
+
+    private static final String DISH = "dish";
+    private static final String SETMEAL = "setmeal";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    //为null表示还没有构建成功，此时不过滤
+    private volatile BloomFilter dishFilter;
+    private volatile BloomFilter setmealFilter;
+    //正在构建的过滤器名称，以及构建期间新增的id
+    private final Map<String, Queue<Long>> building = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时构建过滤器，失败时不影响启动
+     */
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CacheConstant.BLOOM_ADDED_CHANNEL));
+        try {
+            build(DISH, dishMapper::getIdsAfter, false);
+            build(SETMEAL, setmealMapper::getIdsAfter, false);
+        } catch (RuntimeException e) {
+            log.warn("布隆过滤器构建失败，暂不过滤菜品、套餐id：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每天凌晨3点全量重建，清理已经删除的id
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void rebuild() {
+        try {
+            build(DISH, dishMapper::getIdsAfter, true);
+            build(SETMEAL, setmealMapper::getIdsAfter, true);
+        } catch (RuntimeException e) {
+            log.warn("布隆过滤器重建失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每分钟把redis位图合并到本地，补上断线期间其他节点新增的id；还没有构建成功时重试构建
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void sync() {
+        try {
+            if (dishFilter == null || setmealFilter == null) {
+                build(DISH, dishMapper::getIdsAfter, false);
+                build(SETMEAL, setmealMapper::getIdsAfter, false);
+                return;
+            }
+            merge(DISH, dishFilter);
+            merge(SETMEAL, setmealFilter);
+        } catch (RuntimeException e) {
+            log.warn("同步布隆过滤器失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点新增的id
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index < 0) {
+            return;
+        }
+        String name = DISH.equals(body.substring(0, index)) ? DISH : SETMEAL;
+        try {
+            Long id = Long.parseLong(body.substring(index + 1));
+            record(name, id);
+            BloomFilter filter = filter(name);
+            if (filter != null) {
+                filter.put(id);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("无法识别的布隆过滤器消息：{}", body);
+        }
+    }
+
+    public boolean mightContainDish(Long id) {
+        return mightContain(dishFilter, id);
+    }
+
+    public boolean mightContainSetmeal(Long id) {
+        return mightContain(setmealFilter, id);
+    }
+
+    /**
+     * 新增菜品后调用，在事务中调用时等到提交之后再加入
+     * @param id
+     */
+    public void addDish(Long id) {
+        afterCommit(() -> add(DISH, id));
+    }
+
+    /**
+     * 新增套餐后调用，在事务中调用时等到提交之后再加入
+     * @param id
+     */
+    public void addSetmeal(Long id) {
+        afterCommit(() -> add(SETMEAL, id));
+    }
+
+    /**
+     * 事务提交之后执行，提交之前构建的过滤器查询不到这条记录，提交之后加入才不会被重建覆盖
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    //redis不可用时本地位已经设置，其他节点在下一次重建时获得这个id
+                    log.warn("布隆过滤器新增id失败：{}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean mightContain(BloomFilter filter, Long id) {
+        if (id == null) {
+            return false;
+        }
+        //还没有构建成功时放行
+        return filter == null || filter.mightContain(id);
+    }
+
+    private void add(String name, Long id) {
+        record(name, id);
+        BloomFilter filter = filter(name);
+        if (filter == null) {
+            return;
+        }
+        setBits(name, filter, id);
+        try {
+            stringRedisTemplate.convertAndSend(CacheConstant.BLOOM_ADDED_CHANNEL, name + ":" + id);
+        } catch (RuntimeException e) {
+            //其他节点在下一次定时同步时从redis位图获得这个id
+            log.warn("通知其他节点布隆过滤器新增id失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 正在构建过滤器时记录新增的id，先记录再读取当前的过滤器，替换前后的新增都不会遗漏
+     */
+    private void record(String name, Long id) {
+        Queue<Long> added = building.get(name);
+        if (added != null) {
+            added.offer(id);
+        }
+    }
+
+    private BloomFilter filter(String name) {
+        return DISH.equals(name) ? dishFilter : setmealFilter;
+    }
+
+    /**
+     * redis位图合并到本地
+     */
+    private void merge(String name, BloomFilter filter) {
+        byte[] key = redisKey(name, filter);
+        byte[] bitmap = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+        if (bitmap != null) {
+            filter.merge(bitmap);
+        }
+    }
+
+    /**
+     * 设置本地位和redis位
+     */
+    private void setBits(String name, BloomFilter filter, Long id) {
+        filter.put(id);
+        byte[] key = redisKey(name, filter);
+        long[] offsets = filter.offsets(id);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.setBit(key, offset, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 从数据库加载id构建过滤器，并和redis位图同步
+     * @param name
+     * @param idLoader 查询大于指定id的所有id
+     * @param replace 是否用新位图替换redis中的位图（全量重建时使用）
+     */
+    private void build(String name, Function<Long, List<Long>> idLoader, boolean replace) {
+        Queue<Long> added = new ConcurrentLinkedQueue<>();
+        building.put(name, added);
+        try {
+            BloomFilter filter = load(name, idLoader, replace);
+            if (DISH.equals(name)) {
+                dishFilter = filter;
+            } else {
+                setmealFilter = filter;
+            }
+            //构建期间提交的新增id，查询时可能还没有提交，位图也可能被替换，替换之后再补充一次
+            Long id;
+            while ((id = added.poll()) != null) {
+                setBits(name, filter, id);
+            }
+        } finally {
+            building.remove(name, added);
+        }
+    }
+
+    private BloomFilter load(String name, Function<Long, List<Long>> idLoader, boolean replace) {
+        long start = System.currentTimeMillis();
+        BloomFilter filter = new BloomFilter(cacheProperties.getBloomExpectedInsertions(), cacheProperties.getBloomFalsePositiveRate());
+        List<Long> ids = idLoader.apply(0L);
+        long maxId = 0;
+        for (Long id : ids) {
+            filter.put(id);
+            maxId = Math.max(maxId, id);
+        }
+
+        byte[] key = redisKey(name, filter);
+        byte[] tempKey = (new String(key, StandardCharsets.UTF_8) + ":tmp").getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = filter.toBitmap();
+        byte[] merged = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> {
+            if (replace) {
+                connection.set(key, bitmap);
+            } else {
+                //和其他节点已经写入的位合并，不覆盖其他节点新增的id
+                connection.set(tempKey, bitmap);
+                connection.bitOp(RedisStringCommands.BitOperation.OR, key, key, tempKey);
+                connection.del(tempKey);
+            }
+            return connection.get(key);
+        });
+        filter.merge(merged);
+
+        //构建期间新增的id（自增主键大于本次查询到的最大值）补充进去，避免替换位图时丢失
+        for (Long id : idLoader.apply(maxId)) {
+            setBits(name, filter, id);
+        }
+        log.info("{}布隆过滤器构建完成，id数量：{}，位数：{}，哈希函数：{}，耗时：{}ms",
+                name, ids.size(), filter.getNumBits(), filter.getNumHashes(), System.currentTimeMillis() - start);
+        return filter;
+    }
+
+    /**
+     * redis位图的key，包含位数和哈希函数个数，调整参数后不会和旧位图混用
+     */
+    private byte[] redisKey(String name, BloomFilter filter) {
+        return ("bloom:" + name + ":" + filter.getNumBits() + ":" + filter.getNumHashes()).getBytes(StandardCharsets.UTF_8);
+    }
+}
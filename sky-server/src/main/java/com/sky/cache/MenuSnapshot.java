@@ -0,0 +1,48 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuVO;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 预先序列化好的菜单快照，构建完成后不再修改，可以被多个请求线程共享
+ */
+@Getter
+public class MenuSnapshot {
+
+    //构建快照时的菜单目录版本号
+    private final long version;
+
+    //强校验的ETag，包含双引号
+    private final String etag;
+
+    //序列化后的json字节
+    private final byte[] json;
+
+    //gzip压缩后的json字节
+    private final byte[] gzip;
+
+    //快照对应的菜单数据
+    private final MenuVO menu;
+
+    //按id索引的分类、菜品、套餐，用于计算增量
+    private final Map<Long, Category> categoryIndex = new HashMap<>();
+    private final Map<Long, DishVO> dishIndex = new HashMap<>();
+    private final Map<Long, Setmeal> setmealIndex = new HashMap<>();
+
+    public MenuSnapshot(long version, String etag, byte[] json, byte[] gzip, MenuVO menu) {
+        this.version = version;
+        this.etag = etag;
+        this.json = json;
+        this.gzip = gzip;
+        this.menu = menu;
+        menu.getCategories().forEach(category -> categoryIndex.put(category.getId(), category));
+        menu.getDishes().forEach(dish -> dishIndex.put(dish.getId(), dish));
+        menu.getSetmeals().forEach(setmeal -> setmealIndex.put(setmeal.getId(), setmeal));
+    }
+}
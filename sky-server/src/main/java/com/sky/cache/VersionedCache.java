@@ -0,0 +1,114 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于版本号的缓存命名空间
+ *
+ * 缓存key中嵌入命名空间版本号和分组（例如分类id）版本号：
+ *     dish:v{命名空间版本}:{分组id}:v{分组版本}
+ * 失效时只需要对版本号执行一次INCR，新的读请求自然会落到新的key上，
+ * 旧key不再被访问，依靠过期时间自动清理，避免使用KEYS遍历整个redis键空间。
+ */
+@Component
+@Slf4j
+public class VersionedCache {
+
+    //版本号是纯数字，使用字符串序列化器读写，才能和INCR命令配合
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 构造带版本号的缓存key
+     * @param namespace 命名空间
+     * @param group 分组id，例如分类id
+     * @return
+     */
+    public String key(String namespace, Object group) {
+        String namespaceVersionKey = versionKey(namespace);
+        String groupVersionKey = versionKey(namespace, group);
+        //一次MGET取回命名空间和分组的版本号
+        List<String> versions = stringRedisTemplate.opsForValue()
+                .multiGet(Arrays.asList(namespaceVersionKey, groupVersionKey));
+        String namespaceVersion = versionOf(versions, 0);
+        String groupVersion = versionOf(versions, 1);
+        return namespace + ":v" + namespaceVersion + ":" + group + ":v" + groupVersion;
+    }
+
+    /**
+     * 查询命名空间当前的版本号
+     * @param namespace
+     * @return
+     */
+    public long version(String namespace) {
+        String version = stringRedisTemplate.opsForValue().get(versionKey(namespace));
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    /**
+     * 读取缓存
+     * @param key 通过key方法构造的缓存key
+     * @return
+     */
+    public Object get(String key) {
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    /**
+     * 写入缓存，使用默认的过期时间
+     * @param key 通过key方法构造的缓存key
+     * @param value
+     */
+    public void put(String key, Object value) {
+        redisTemplate.opsForValue().set(key, value, CacheConstant.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 使整个命名空间失效
+     * @param namespace
+     */
+    public void invalidate(String namespace) {
+        Long version = stringRedisTemplate.opsForValue().increment(versionKey(namespace));
+        log.debug("缓存命名空间{}失效，当前版本：{}", namespace, version);
+    }
+
+    /**
+     * 只使命名空间下的某个分组失效，例如某个分类下的菜品缓存
+     * @param namespace
+     * @param group
+     */
+    public void invalidate(String namespace, Object group) {
+        if (group == null) {
+            invalidate(namespace);
+            return;
+        }
+        Long version = stringRedisTemplate.opsForValue().increment(versionKey(namespace, group));
+        log.debug("缓存分组{}:{}失效，当前版本：{}", namespace, group, version);
+    }
+
+    private String versionKey(String namespace) {
+        return CacheConstant.VERSION_KEY_PREFIX + namespace;
+    }
+
+    private String versionKey(String namespace, Object group) {
+        return CacheConstant.VERSION_KEY_PREFIX + namespace + ":" + group;
+    }
+
+    private String versionOf(List<String> versions, int index) {
+        if (versions == null || versions.size() <= index || versions.get(index) == null) {
+            return "0";
+        }
+        return versions.get(index);
+    }
+}
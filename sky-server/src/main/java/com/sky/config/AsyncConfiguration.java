@@ -0,0 +1,100 @@
+package com.sky.config;
+
+import com.sky.context.RequestContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类，创建异步处理使用的线程池
+ * 所有线程池都设置了传递请求上下文的装饰器，任务在提交它的请求的上下文中执行
+ */
+@Configuration
+@EnableAsync
+@Slf4j
+public class AsyncConfiguration {
+
+    /**
+     * 提交任务时复制当前的请求上下文，执行时恢复
+     * @return
+     */
+    @Bean
+    public TaskDecorator requestContextTaskDecorator() {
+        return RequestContext::wrap;
+    }
+
+    /**
+     * @Async方法默认使用的线程池
+     * @param requestContextTaskDecorator
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor taskExecutor(TaskDecorator requestContextTaskDecorator) {
+        log.info("开始创建异步任务线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("async-");
+        executor.setTaskDecorator(requestContextTaskDecorator);
+        return executor;
+    }
+
+    /**
+     * 微信登录在拿到openid之后查询、注册用户使用的线程池
+     * 不能在异步http客户端的I/O线程上访问数据库，队列满时拒绝，登录请求直接失败而不是堆积
+     * @param requestContextTaskDecorator
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor loginExecutor(TaskDecorator requestContextTaskDecorator) {
+        log.info("开始创建登录线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("user-login-");
+        executor.setTaskDecorator(requestContextTaskDecorator);
+        return executor;
+    }
+
+    /**
+     * 关闭WebSocket连接使用的线程池
+     * 关闭需要给客户端发送关闭帧，慢客户端可能阻塞，和@Async任务分开；
+     * 队列满时拒绝，连接已经标记为关闭并取消了订阅，由心跳稍后重新提交关闭
+     * @param requestContextTaskDecorator
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor webSocketCloseExecutor(TaskDecorator requestContextTaskDecorator) {
+        log.info("开始创建WebSocket关闭连接线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("ws-close-");
+        executor.setTaskDecorator(requestContextTaskDecorator);
+        return executor;
+    }
+
+    /**
+     * WebSocket心跳发送ping使用的线程池
+     * 和@Async任务分开，业务任务堆积时不影响心跳；队列满时拒绝，这一次ping按没有收到pong处理
+     * @param requestContextTaskDecorator
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor heartbeatExecutor(TaskDecorator requestContextTaskDecorator) {
+        log.info("开始创建WebSocket心跳线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("ws-ping-");
+        executor.setTaskDecorator(requestContextTaskDecorator);
+        return executor;
+    }
+}
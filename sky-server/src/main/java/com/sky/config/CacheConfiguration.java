@@ -0,0 +1,80 @@
+package com.sky.config;
+
+import com.sky.cache.CoalescingCacheManager;
+import com.sky.properties.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类，创建Spring Cache使用的缓存管理器
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    /**
+     * 缓存后台刷新使用的线程池，队列满时直接拒绝，调用方继续返回旧值
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("cache-refresh-");
+        return executor;
+    }
+
+    /**
+     * 启动时预热缓存使用的线程池，预热完成后线程空闲超时自动退出
+     * @param cacheProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheWarmUpExecutor(CacheProperties cacheProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(cacheProperties.getWarmUpThreads());
+        executor.setMaxPoolSize(cacheProperties.getWarmUpThreads());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("cache-warmup-");
+        return executor;
+    }
+
+    /**
+     * 基于redis的缓存管理器，外层包装请求合并
+     * allEntries清理时使用SCAN分批删除，而不是KEYS
+     * @param redisConnectionFactory
+     * @param cacheProperties
+     * @param cacheRefreshExecutor
+     * @param redisValueSerializer
+     * @return
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     CacheProperties cacheProperties,
+                                     RedisSerializer<Object> redisValueSerializer,
+                                     @Qualifier("cacheRefreshExecutor") ThreadPoolTaskExecutor cacheRefreshExecutor) {
+        log.info("开始创建缓存管理器...");
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory, BatchStrategies.scan(1000));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer)))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new CoalescingCacheManager(redisCacheManager, cacheProperties, cacheRefreshExecutor);
+    }
+}
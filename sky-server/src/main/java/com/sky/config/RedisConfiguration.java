@@ -1,11 +1,17 @@
 package com.sky.config;
 
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.properties.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @Slf4j
@@ -22,16 +28,54 @@ public class RedisConfiguration {
      *   </dependency>
      * */
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<Object> redisValueSerializer){
         log.info("开始创建redis模板对象...");
         RedisTemplate redisTemplate = new RedisTemplate();
         //设置redis的连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         //设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        //设置redis value的序列化器，代替默认的jdk序列化
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
         return redisTemplate;
     }
 
+    /**
+     * redis发布订阅的监听容器，各业务组件自行注册需要监听的频道
+     * 收到的消息在同一个线程里按顺序处理，WebSocket集群消息的序号依赖这个顺序
+     * @param redisConnectionFactory
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory){
+        log.info("开始创建redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        ThreadPoolTaskExecutor listenerExecutor = new ThreadPoolTaskExecutor();
+        listenerExecutor.setCorePoolSize(1);
+        listenerExecutor.setMaxPoolSize(1);
+        listenerExecutor.setThreadNamePrefix("redis-listener-");
+        listenerExecutor.setDaemon(true);
+        listenerExecutor.initialize();
+        container.setTaskExecutor(listenerExecutor);
+        //订阅使用单独的线程，不占用处理消息的线程
+        container.setSubscriptionExecutor(new SimpleAsyncTaskExecutor("redis-subscription-"));
+        return container;
+    }
+
+    /**
+     * redis缓存值的序列化器：带格式版本头的Smile二进制格式，较大的值使用LZ4压缩
+     * @param cacheProperties
+     * @return
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(CacheProperties cacheProperties){
+        boolean writeJdk = "jdk".equalsIgnoreCase(cacheProperties.getValueFormat());
+        return new CompactRedisSerializer(writeJdk, cacheProperties.getCompressThresholdBytes());
+    }
+
 
 }
 
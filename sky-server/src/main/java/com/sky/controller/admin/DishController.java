@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.VersionedCache;
+import com.sky.constant.CacheConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,10 +13,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 菜品管理
@@ -28,7 +29,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private VersionedCache versionedCache;
 
     /**
      * 新增菜品
@@ -42,9 +43,8 @@ public class DishController {
         log.info("新增菜品：{}", dishDTO);
         dishService.saveWithFlavor(dishDTO);//后绪步骤开发
 
-        //根据id精确清理缓存
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache("dish_*");
+        //只清理新菜品所属分类的缓存
+        cleanCache(dishDTO.getCategoryId());
 
         return Result.success();
     }
@@ -75,8 +75,8 @@ public class DishController {
         log.info("菜品批量删除：{}", ids);
         dishService.deleteBatch(ids);//后绪步骤实现
 
-        //将所有菜品缓存数据清理掉，所有以dish_开头的key
-        cleanCache("dish_*");
+        //批量删除可能涉及多个分类，直接让整个菜品缓存命名空间失效
+        versionedCache.invalidate(CacheConstant.DISH_NAMESPACE);
 
         return Result.success();
     }
@@ -105,10 +105,13 @@ public class DishController {
     @ApiOperation("修改菜品")
     public Result update(@RequestBody DishDTO dishDTO) {
         log.info("修改菜品：{}", dishDTO);
-        dishService.updateWithFlavor(dishDTO);
+        //修改时可能变更了分类，原分类和新分类的缓存都需要清理
+        Long oldCategoryId = dishService.updateWithFlavor(dishDTO);
 
-        //将所有菜品缓存数据清理掉，所有以dish_开头的key
-        cleanCache("dish_*");
+        cleanCache(oldCategoryId);
+        if (!oldCategoryId.equals(dishDTO.getCategoryId())) {
+            cleanCache(dishDTO.getCategoryId());
+        }
 
         return Result.success();
     }
@@ -133,19 +136,41 @@ public class DishController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation("菜品起售停售")
+    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result<String> startOrStop(@PathVariable Integer status, Long id){
-        dishService.startOrStop(status,id);
+        Long categoryId = dishService.startOrStop(status,id);
 
-        //将所有菜品缓存数据清理掉，所有以dish_开头的key
-        cleanCache("dish_*");
+        //只清理当前菜品所属分类的缓存
+        cleanCache(categoryId);
 
         return Result.success();
     }
 
-    private void cleanCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+    /**
+     * 批量起售停售菜品，例如某种食材用完时一次停售多个菜品
+     * @param status
+     * @param ids
+     * @return
+     */
+    @PostMapping("/status/batch/{status}")
+    @ApiOperation("菜品批量起售停售")
+    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
+    public Result<String> startOrStopBatch(@PathVariable Integer status, @RequestParam List<Long> ids){
+        log.info("菜品批量起售停售：{}，{}", status, ids);
+        dishService.startOrStopBatch(status, ids);
+
+        //批量的菜品通常分布在多个分类中，逐个清理需要先查询分类，直接让整个菜品缓存命名空间失效
+        versionedCache.invalidate(CacheConstant.DISH_NAMESPACE);
 
+        return Result.success();
+    }
+
+    /**
+     * 清理某个分类的菜品缓存：递增该分类的缓存版本号，旧key依靠过期时间自动清理
+     * @param categoryId
+     */
+    private void cleanCache(Long categoryId){
+        versionedCache.invalidate(CacheConstant.DISH_NAMESPACE, categoryId);
     }
 
 
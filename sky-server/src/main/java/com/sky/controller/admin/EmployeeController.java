@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.JwtClaimsCache;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
@@ -17,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +35,8 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
 
     /**
      * 登录
@@ -67,12 +71,15 @@ public class EmployeeController {
 
     /**
      * 退出
+     * 撤销当前的令牌，之后所有节点都不再接受该令牌
      *
+     * @param request
      * @return
      */
     @PostMapping("/logout")
     @ApiOperation("员工退出")
-    public Result<String> logout() {
+    public Result<String> logout(HttpServletRequest request) {
+        jwtClaimsCache.revoke(request.getHeader(jwtProperties.getAdminTokenName()));
         return Result.success();
     }
 
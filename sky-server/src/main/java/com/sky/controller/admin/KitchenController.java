@@ -0,0 +1,47 @@
+package com.sky.controller.admin;
+
+import com.sky.result.Result;
+import com.sky.service.KitchenService;
+import com.sky.vo.KitchenQueueVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 后厨出餐队列
+ * 后厨页面先查询队列，再订阅WebSocket主题 shop:{id}:kitchen 接收增量变化
+ */
+@RestController
+@RequestMapping("/admin/kitchen")
+@Api(tags = "后厨相关接口")
+@Slf4j
+public class KitchenController {
+
+    @Autowired
+    private KitchenService kitchenService;
+
+    /**
+     * 查询后厨出餐队列
+     * @return
+     */
+    @GetMapping("/queue")
+    @ApiOperation("查询后厨出餐队列")
+    public Result<KitchenQueueVO> queue() {
+        return Result.success(kitchenService.getQueue());
+    }
+
+    /**
+     * 订单出餐
+     * @param orderId
+     * @return
+     */
+    @PostMapping("/{orderId}/done")
+    @ApiOperation("订单出餐")
+    public Result done(@PathVariable Long orderId) {
+        log.info("订单出餐：{}", orderId);
+        kitchenService.done(orderId);
+        return Result.success();
+    }
+}
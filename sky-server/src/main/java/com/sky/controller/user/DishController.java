@@ -1,5 +1,7 @@
 package com.sky.controller.user;
 
+import com.sky.cache.VersionedCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
@@ -21,6 +23,8 @@ import java.util.List;
 public class DishController {
     @Autowired
     private DishService dishService;
+    @Autowired
+    private VersionedCache versionedCache;
 
     /**
      * 根据分类id查询菜品
@@ -31,11 +35,22 @@ public class DishController {
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId) {
+        //构造带版本号的缓存key：dish:v{版本}:{分类id}:v{分类版本}
+        String key = versionedCache.key(CacheConstant.DISH_NAMESPACE, categoryId);
+
+        //查询redis中是否存在菜品数据，存在则直接返回，无须查询数据库
+        List<DishVO> list = (List<DishVO>) versionedCache.get(key);
+        if (list != null && list.size() > 0) {
+            return Result.success(list);
+        }
+
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        List<DishVO> list = dishService.listWithFlavor(dish);
+        //不存在则查询数据库，并将查询到的数据放入redis中
+        list = dishService.listWithFlavor(dish);
+        versionedCache.put(key, list);
 
         return Result.success(list);
     }
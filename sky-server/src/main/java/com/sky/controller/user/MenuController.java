@@ -0,0 +1,92 @@
+package com.sky.controller.user;
+
+import com.sky.cache.MenuSnapshot;
+import com.sky.result.Result;
+import com.sky.service.MenuService;
+import com.sky.vo.MenuDeltaVO;
+import com.sky.vo.MenuSearchVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController("userMenuController")
+@RequestMapping("/user/menu")
+@Api(tags = "C端-菜单快照接口")
+public class MenuController {
+
+    @Autowired
+    private MenuService menuService;
+
+    /**
+     * 获取整个菜单的快照
+     * 响应体是预先序列化并gzip压缩好的字节数组，客户端携带的ETag没有变化时直接返回304
+     *
+     * @param ifNoneMatch
+     * @param acceptEncoding
+     * @return
+     */
+    @GetMapping("/snapshot")
+    @ApiOperation("获取菜单快照")
+    public ResponseEntity<byte[]> snapshot(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        MenuSnapshot snapshot = menuService.getSnapshot();
+
+        if (snapshot.getEtag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        //客户端不支持gzip时返回未压缩的json
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            return builder.body(snapshot.getJson());
+        }
+        return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+    }
+
+    /**
+     * 菜单增量同步
+     * 只返回客户端版本号之后变更过的分类、菜品和套餐，变更日志被压缩时返回全量数据
+     *
+     * @param version 客户端当前的菜单版本号，首次同步时不传
+     * @return
+     */
+    @GetMapping("/delta")
+    @ApiOperation("菜单增量同步")
+    public Result<MenuDeltaVO> delta(@RequestParam(required = false) Long version) {
+        MenuDeltaVO menuDeltaVO = menuService.getDelta(version);
+        return Result.success(menuDeltaVO);
+    }
+
+    /**
+     * 搜索菜品和套餐
+     * 支持名称、拼音首字母（如 gbjd）和描述，结果按相关度排序
+     *
+     * @param keyword
+     * @param limit 菜品和套餐各自最多返回的数量，默认20，最多50
+     * @return
+     */
+    @GetMapping("/search")
+    @ApiOperation("搜索菜品和套餐")
+    public Result<MenuSearchVO> search(@RequestParam String keyword, @RequestParam(required = false) Integer limit) {
+        MenuSearchVO menuSearchVO = menuService.search(keyword, limit);
+        return Result.success(menuSearchVO);
+    }
+}
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.annotation.RateLimit;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.result.Result;
@@ -28,6 +29,7 @@ public class OrderController {
      */
     @PostMapping("/submit")
     @ApiOperation("用户下单")
+    @RateLimit(permits = 5, periodSeconds = 10, cluster = true)
     public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO){
         log.info("用户下单，参数为:{}",ordersSubmitDTO);
         OrderSubmitVO orderSubmitVO = orderService.SubmitOrder(ordersSubmitDTO);
@@ -57,6 +59,7 @@ public class OrderController {
      */
     @GetMapping("/reminder/{id}")
     @ApiOperation("用户催单")
+    @RateLimit(permits = 5, periodSeconds = 60, cluster = true)
     public Result reminder(@PathVariable("id") Long id) {
         orderService.reminder(id);
         return Result.success();
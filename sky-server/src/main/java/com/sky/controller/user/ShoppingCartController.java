@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.annotation.RateLimit;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.ShoppingCart;
 import com.sky.result.Result;
@@ -29,6 +30,7 @@ public class ShoppingCartController {
      */
     @PostMapping("/add")
     @ApiOperation("添加购物车")
+    @RateLimit(permits = 10)
     public Result add(@RequestBody ShoppingCartDTO shoppingCartDTO){
         log.info("添加购物车,商品的信息为:{}",shoppingCartDTO);
         shoppingCartService.addShoppingCart(shoppingCartDTO);
@@ -53,6 +55,7 @@ public class ShoppingCartController {
      */
     @PostMapping("/sub")
     @ApiOperation("删除购物车中一个商品")
+    @RateLimit(permits = 10)
     public Result sub(@RequestBody ShoppingCartDTO shoppingCartDTO){
         log.info("删除购物车中一个商品，商品：{}", shoppingCartDTO);
         shoppingCartService.subShoppingCart(shoppingCartDTO);
@@ -65,6 +68,7 @@ public class ShoppingCartController {
      */
     @DeleteMapping("/clean")
     @ApiOperation("清空购物车")
+    @RateLimit(permits = 10)
     public Result clean(){
         shoppingCartService.cleanShoppingCart();
         return Result.success();
@@ -18,6 +18,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user/user")
@@ -32,19 +33,27 @@ public class UserController {
 
     /**
      * 微信登录
+     * 返回CompletableFuture，等待微信接口响应期间释放tomcat线程
      * @param userLoginDTO
      * @return
      */
     @PostMapping("/login")
     @ApiOperation("微信登录")
-    public Result<UserLoginVO> login(@RequestBody UserLoginDTO userLoginDTO){
+    public CompletableFuture<Result<UserLoginVO>> login(@RequestBody UserLoginDTO userLoginDTO){
         //日志输出授权码的信息
         log.info("微信用户登录：{}",userLoginDTO.getCode());
 
         //微信登录：需要返回值，因为他需要获取用户的信息，之后通过微信用户信息生成jwt令牌。
         //如果这个方法没有抛出异常说明登陆成功了，有异常也不需要在这处理 因为有全局异常处理类。
-        User user = userService.wxLogin(userLoginDTO);//后绪步骤实现
+        return userService.wxLogin(userLoginDTO).thenApply(this::loginSuccess);
+    }
 
+    /**
+     * 登录成功，为微信用户生成jwt令牌
+     * @param user
+     * @return
+     */
+    private Result<UserLoginVO> loginSuccess(User user){
         //为微信用户生成jwt令牌
         Map<String, Object> claims = new HashMap<>();
         claims.put(JwtClaimsConstant.USER_ID,user.getId());//存放的是userid.常量类的方式
@@ -0,0 +1,21 @@
+package com.sky.event;
+
+import com.sky.enumeration.CatalogEntityType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * 菜单目录变更事件，在变更写入变更日志（事务提交）之后发布
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogChangedEvent {
+
+    //变更的实体类型
+    private final CatalogEntityType type;
+
+    //变更的实体id
+    private final Collection<Long> ids;
+}
@@ -0,0 +1,24 @@
+package com.sky.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 订单状态变化事件，在订单状态更新之后发布，事务提交后推送给用户和管理端
+ */
+@Getter
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+
+    //订单id
+    private final Long orderId;
+
+    //下单用户的id
+    private final Long userId;
+
+    //订单号
+    private final String number;
+
+    //变化后的订单状态
+    private final Integer status;
+}
@@ -0,0 +1,80 @@
+package com.sky.filter;
+
+import com.sky.context.RequestContext;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * 请求上下文过滤器（类名不叫RequestContextFilter，避免和spring自带的同名bean冲突）
+ * 请求开始时创建上下文，生成请求id（或沿用网关传入的请求id）并写入日志MDC，
+ * 请求结束时无论是否发生异常都清除上下文，避免tomcat线程复用时把上一个请求的id带到下一个请求。
+ * 上下文同时保存在请求属性中，异步请求再次分派时沿用同一个上下文，整个请求只有一个请求id。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    //客户端可以传入本次请求的超时时间（毫秒），用于计算截止时间
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+    public static final String REQUEST_ID_MDC_KEY = "requestId";
+    private static final String CONTEXT_ATTRIBUTE = RequestIdFilter.class.getName() + ".CONTEXT";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestContext context = (RequestContext) request.getAttribute(CONTEXT_ATTRIBUTE);
+        if (context == null || !isAsyncDispatch(request)) {
+            String requestId = request.getHeader(REQUEST_ID_HEADER);
+            if (!StringUtils.hasText(requestId) || requestId.length() > 64) {
+                requestId = UUID.randomUUID().toString().replace("-", "");
+            }
+            context = new RequestContext(requestId, deadline(request.getHeader(REQUEST_TIMEOUT_HEADER)));
+            request.setAttribute(CONTEXT_ATTRIBUTE, context);
+            response.setHeader(REQUEST_ID_HEADER, requestId);
+        }
+        RequestContext.set(context);
+        MDC.put(REQUEST_ID_MDC_KEY, context.getRequestId());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestContext.clear();
+            MDC.remove(REQUEST_ID_MDC_KEY);
+        }
+    }
+
+    /**
+     * 异步请求（返回CompletableFuture的接口）在结果返回后会再次分派，此时也需要上下文，沿用第一次分派时创建的
+     * @return
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    private long deadline(String timeout) {
+        if (!StringUtils.hasText(timeout)) {
+            return 0;
+        }
+        try {
+            long millis = Long.parseLong(timeout.trim());
+            return millis > 0 ? System.currentTimeMillis() + millis : 0;
+        } catch (NumberFormatException e) {
+            log.debug("忽略无效的请求超时时间：{}", timeout);
+            return 0;
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.sky.interceptor;
 
+import com.sky.cache.JwtClaimsCache;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -23,6 +23,8 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
 
     /**
      * 校验jwt
@@ -43,13 +45,11 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
         //1、从请求头中获取令牌
         String token = request.getHeader(jwtProperties.getUserTokenName());
 
-        //2、校验令牌
+        //2、校验令牌，已经校验过的令牌直接从缓存中获取用户id
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
-            Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前用户的id：", userId);
-            BaseContext.setCurrentId(userId);
+            Long userId = jwtClaimsCache.verify(jwtProperties.getUserSecretKey(), JwtClaimsConstant.USER_ID, token);
+            log.debug("当前用户的id：{}", userId);
+            RequestContext.current().setUserId(userId);
             //3、通过，放行
             return true;
         } catch (Exception ex) {
@@ -58,4 +58,16 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
             return false;
         }
     }
+
+    /**
+     * 请求完成后清除当前登录id，tomcat线程会被其他请求复用
+     *
+     * @param request
+     * @param response
+     * @param handler
+     * @param ex
+     */
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        BaseContext.removeCurrentId();
+    }
 }
@@ -55,6 +55,23 @@ public interface DishMapper {
     @Select("select * from dish where id = #{id}")
     Dish getById(Long id);
 
+    /**
+     * 根据主键批量查询菜品
+     *
+     * @param ids
+     * @return
+     */
+    List<Dish> getByIds(List<Long> ids);
+
+    /**
+     * 查询大于指定id的所有菜品id
+     *
+     * @param id
+     * @return
+     */
+    @Select("select id from dish where id > #{id}")
+    List<Long> getIdsAfter(Long id);
+
     /**
      * 根据主键删除菜品数据
      *
@@ -78,6 +95,23 @@ public interface DishMapper {
     @AutoFill(value = OperationType.UPDATE) //公共字段自动填充
     void update(Dish dish);
 
+    /**
+     * 批量修改菜品的起售停售状态
+     *
+     * @param dish 只使用其中的status和公共字段
+     * @param ids
+     */
+    @AutoFill(value = OperationType.UPDATE)
+    void updateStatusByIds(Dish dish, List<Long> ids);
+
+    /**
+     * 统计菜品id集合中起售中的菜品数量
+     *
+     * @param ids
+     * @return
+     */
+    Integer countEnabledByIds(List<Long> ids);
+
     /**
      * 根据套餐id查询菜品
      * @param setmealId
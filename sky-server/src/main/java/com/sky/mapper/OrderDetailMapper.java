@@ -2,6 +2,7 @@ package com.sky.mapper;
 
 import com.sky.entity.OrderDetail;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
@@ -13,4 +14,17 @@ public interface OrderDetailMapper {
      */
     void insertBatch(List<OrderDetail> orderDetails);
 
+    /**
+     * 根据订单id查询订单明细
+     * @param orderId
+     */
+    @Select("select * from order_detail where order_id = #{orderId}")
+    List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据多个订单id查询订单明细
+     * @param orderIds
+     */
+    List<OrderDetail> getByOrderIds(List<Long> orderIds);
+
 }
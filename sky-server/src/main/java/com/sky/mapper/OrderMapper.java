@@ -65,4 +65,10 @@ public interface OrderMapper {
      */
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
 
+    /**
+     * 查询处于指定状态的订单
+     * @param statuses
+     */
+    List<Orders> getByStatuses(List<Integer> statuses);
+
 }
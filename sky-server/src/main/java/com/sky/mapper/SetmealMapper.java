@@ -47,6 +47,21 @@ public interface SetmealMapper {
     @Select("select * from setmeal where id = #{id}")
     Setmeal getById(Long id);
 
+    /**
+     * 根据id批量查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> getByIds(List<Long> ids);
+
+    /**
+     * 查询大于指定id的所有套餐id
+     * @param id
+     * @return
+     */
+    @Select("select id from setmeal where id > #{id}")
+    List<Long> getIdsAfter(Long id);
+
     /**
      * 根据id删除套餐
      * @param setmealId
@@ -54,6 +69,27 @@ public interface SetmealMapper {
     @Delete("delete from setmeal where id = #{id}")
     void deleteById(Long setmealId);
 
+    /**
+     * 根据id集合批量删除套餐
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 停售包含任意一个指定菜品的所有起售中套餐
+     * @param setmeal 只使用其中的status和公共字段
+     * @param dishIds
+     */
+    @AutoFill(OperationType.UPDATE)
+    void updateStatusByDishIds(Setmeal setmeal, List<Long> dishIds);
+
+    /**
+     * 统计套餐id集合中起售中的套餐数量
+     * @param ids
+     * @return
+     */
+    Integer countEnabledByIds(List<Long> ids);
+
     /**
      * 根据分类id查询套餐的数量
      * @param id
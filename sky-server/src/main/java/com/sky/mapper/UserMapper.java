@@ -23,6 +23,13 @@ public interface UserMapper {
      */
     void insert(User user);
 
+    /**
+     * 插入数据，openid已经存在时忽略（依赖user表openid上的唯一索引）
+     * @param user
+     * @return 实际插入的行数
+     */
+    int insertIgnore(User user);
+
 
     @Select("select * from user where id = #{id}")
     User getById(Long userId);
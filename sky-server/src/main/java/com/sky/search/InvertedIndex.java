@@ -0,0 +1,243 @@
+package com.sky.search;
+
+import com.sky.utils.PinyinUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 名称和描述的内存倒排索引
+ *
+ * 名称、名称的拼音首字母、描述都切分为单字和二元组(n-gram)，每个词项对应包含它的文档id集合。
+ * 查询时先对查询词的所有二元组求交集得到候选文档，再用原文做子串校验并打分排序，
+ * 因此不会出现n-gram拼接导致的误命中。
+ * 写操作串行执行，读操作不加锁。
+ */
+public class InvertedIndex {
+
+    //名称完全相同、前缀、包含；拼音首字母完全相同、前缀、包含；描述包含
+    private static final int NAME_EQUALS = 100;
+    private static final int NAME_PREFIX = 80;
+    private static final int NAME_CONTAINS = 60;
+    private static final int INITIALS_EQUALS = 50;
+    private static final int INITIALS_PREFIX = 40;
+    private static final int INITIALS_CONTAINS = 30;
+    private static final int DESCRIPTION_CONTAINS = 10;
+
+    //词项 -> 文档id
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    //文档id -> 文档
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+    /**
+     * 新增或更新文档
+     * @param id
+     * @param name
+     * @param description
+     */
+    public synchronized void put(Long id, String name, String description) {
+        remove(id);
+        Document document = new Document(id, normalize(name), PinyinUtil.initials(name), normalize(description));
+        documents.put(id, document);
+        for (String term : document.terms()) {
+            postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    /**
+     * 删除文档
+     * @param id
+     */
+    public synchronized void remove(Long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms()) {
+            Set<Long> ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public synchronized void clear() {
+        postings.clear();
+        documents.clear();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * 搜索
+     * @param keyword 查询词
+     * @param includeDescription 是否匹配描述
+     * @param limit 最多返回的数量，小于等于0表示不限制
+     * @return 按相关度从高到低排列的文档id
+     */
+    public List<Long> search(String keyword, boolean includeDescription, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> candidates = candidates(query);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (Long id : candidates) {
+            Document document = documents.get(id);
+            if (document == null) {
+                continue;
+            }
+            int score = document.score(query, includeDescription);
+            if (score > 0) {
+                hits.add(new Hit(document, score));
+            }
+        }
+        //相关度相同时名称越短越靠前
+        hits.sort(Comparator.comparingInt((Hit hit) -> -hit.score)
+                .thenComparingInt(hit -> hit.document.name.length())
+                .thenComparing(hit -> hit.document.id));
+
+        int size = limit > 0 ? Math.min(limit, hits.size()) : hits.size();
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(hits.get(i).document.id);
+        }
+        return ids;
+    }
+
+    /**
+     * 对查询词的所有词项求交集，从最短的倒排列表开始
+     * @param query
+     * @return
+     */
+    private Set<Long> candidates(String query) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String term : grams(query, true)) {
+            Set<Long> ids = postings.get(term);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 切分词项：长度为1时只有单字，否则查询只使用二元组，索引同时写入单字和二元组
+     * @param text
+     * @param query
+     * @return
+     */
+    private static Set<String> grams(String text, boolean query) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text.length() == 1 || !query) {
+            for (int i = 0; i < text.length(); i++) {
+                grams.add(text.substring(i, i + 1));
+            }
+        }
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * 统一转为小写，去掉空白和标点
+     * @param text
+     * @return
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static class Document {
+
+        private final Long id;
+        private final String name;
+        private final String initials;
+        private final String description;
+
+        private Document(Long id, String name, String initials, String description) {
+            this.id = id;
+            this.name = name;
+            this.initials = initials;
+            this.description = description;
+        }
+
+        private Set<String> terms() {
+            Set<String> terms = grams(name, false);
+            terms.addAll(grams(initials, false));
+            terms.addAll(grams(description, false));
+            return terms;
+        }
+
+        private int score(String query, boolean includeDescription) {
+            int score = 0;
+            if (name.equals(query)) {
+                score = NAME_EQUALS;
+            } else if (name.startsWith(query)) {
+                score = NAME_PREFIX;
+            } else if (name.contains(query)) {
+                score = NAME_CONTAINS;
+            } else if (initials.equals(query)) {
+                score = INITIALS_EQUALS;
+            } else if (initials.startsWith(query)) {
+                score = INITIALS_PREFIX;
+            } else if (initials.contains(query)) {
+                score = INITIALS_CONTAINS;
+            }
+            if (includeDescription && description.contains(query)) {
+                score += DESCRIPTION_CONTAINS;
+            }
+            return score;
+        }
+    }
+
+    private static class Hit {
+
+        private final Document document;
+        private final int score;
+
+        private Hit(Document document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.sky.search;
+
+import com.sky.cache.CatalogChangeLog;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.enumeration.CatalogEntityType;
+import com.sky.event.CatalogChangedEvent;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 菜品和套餐的名称搜索索引
+ *
+ * 启动时从数据库全量构建；本节点的变更通过 {@link CatalogChangedEvent} 立即更新，
+ * 其他节点的变更通过定时读取菜单目录变更日志补齐，变更日志被压缩时全量重建。
+ * 全量重建时构建新的索引再整体替换，重建期间的搜索仍然使用完整的旧索引。
+ */
+@Component
+@Slf4j
+public class MenuSearchIndex {
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private CatalogChangeLog catalogChangeLog;
+
+    private volatile InvertedIndex dishIndex = new InvertedIndex();
+    private volatile InvertedIndex setmealIndex = new InvertedIndex();
+
+    //索引已经同步到的菜单目录版本号
+    private volatile long version = -1;
+
+    /**
+     * 启动时构建索引，数据库或redis不可用时不影响启动，由定时同步重试构建
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("构建菜品搜索索引失败，稍后重试：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按名称（含拼音首字母）搜索菜品，返回全部命中的菜品id，索引尚未构建完成时返回null
+     * @param name
+     * @return
+     */
+    public List<Long> searchDishIdsByName(String name) {
+        return ready() ? dishIndex.search(name, false, 0) : null;
+    }
+
+    /**
+     * 按名称（含拼音首字母）搜索套餐，返回全部命中的套餐id，索引尚未构建完成时返回null
+     * @param name
+     * @return
+     */
+    public List<Long> searchSetmealIdsByName(String name) {
+        return ready() ? setmealIndex.search(name, false, 0) : null;
+    }
+
+    /**
+     * 按名称、拼音首字母和描述搜索菜品，按相关度排序
+     * @param keyword
+     * @param limit
+     * @return
+     */
+    public List<Long> searchDishes(String keyword, int limit) {
+        return dishIndex.search(keyword, true, limit);
+    }
+
+    /**
+     * 按名称、拼音首字母和描述搜索套餐，按相关度排序
+     * @param keyword
+     * @param limit
+     * @return
+     */
+    public List<Long> searchSetmeals(String keyword, int limit) {
+        return setmealIndex.search(keyword, true, limit);
+    }
+
+    /**
+     * 本节点的菜单目录变更
+     * @param event
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!ready()) {
+            return;
+        }
+        refresh(event.getType(), event.getIds());
+    }
+
+    /**
+     * 每10秒根据变更日志同步其他节点的变更，启动时没有构建成功的在这里重试
+     */
+    @Scheduled(fixedDelay = 10000)
+    public synchronized void sync() {
+        if (!ready()) {
+            rebuild();
+            return;
+        }
+        long current = catalogChangeLog.currentVersion();
+        if (current == version) {
+            return;
+        }
+        Map<CatalogEntityType, Set<Long>> changes = catalogChangeLog.changesSince(version, current);
+        if (changes == null) {
+            rebuild();
+            return;
+        }
+        refresh(CatalogEntityType.DISH, changes.getOrDefault(CatalogEntityType.DISH, Collections.emptySet()));
+        refresh(CatalogEntityType.SETMEAL, changes.getOrDefault(CatalogEntityType.SETMEAL, Collections.emptySet()));
+        version = current;
+    }
+
+    /**
+     * 全量重建索引
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        long current = catalogChangeLog.currentVersion();
+
+        List<Dish> dishes = dishMapper.list(Dish.builder().build());
+        List<Setmeal> setmeals = setmealMapper.list(Setmeal.builder().build());
+        InvertedIndex newDishIndex = new InvertedIndex();
+        dishes.forEach(dish -> newDishIndex.put(dish.getId(), dish.getName(), dish.getDescription()));
+        InvertedIndex newSetmealIndex = new InvertedIndex();
+        setmeals.forEach(setmeal -> newSetmealIndex.put(setmeal.getId(), setmeal.getName(), setmeal.getDescription()));
+
+        //构建期间本节点对旧索引的增量更新会丢失，版本号取的是构建之前的值，下一次同步会重新应用这些变更
+        dishIndex = newDishIndex;
+        setmealIndex = newSetmealIndex;
+        version = current;
+        log.info("菜品搜索索引构建完成，菜品：{}，套餐：{}，耗时：{}ms",
+                newDishIndex.size(), newSetmealIndex.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 从数据库重新加载变更的菜品或套餐，数据库中已经不存在的从索引中删除
+     * @param type
+     * @param ids
+     */
+    private void refresh(CatalogEntityType type, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        Set<Long> missing = new HashSet<>(idList);
+        if (type == CatalogEntityType.DISH) {
+            for (Dish dish : dishMapper.getByIds(idList)) {
+                dishIndex.put(dish.getId(), dish.getName(), dish.getDescription());
+                missing.remove(dish.getId());
+            }
+            missing.forEach(dishIndex::remove);
+        } else if (type == CatalogEntityType.SETMEAL) {
+            for (Setmeal setmeal : setmealMapper.getByIds(idList)) {
+                setmealIndex.put(setmeal.getId(), setmeal.getName(), setmeal.getDescription());
+                missing.remove(setmeal.getId());
+            }
+            missing.forEach(setmealIndex::remove);
+        }
+    }
+
+    private boolean ready() {
+        return version >= 0;
+    }
+}
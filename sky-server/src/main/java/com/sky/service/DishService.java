@@ -14,8 +14,16 @@ public interface DishService {
      * 菜品起售停售
      * @param status
      * @param id
+     * @return 菜品所属的分类id
      */
-    void startOrStop(Integer status, Long id);
+    Long startOrStop(Integer status, Long id);
+
+    /**
+     * 批量起售停售菜品，停售时同时停售包含这些菜品的套餐
+     * @param status
+     * @param ids
+     */
+    void startOrStopBatch(Integer status, List<Long> ids);
 
     /**
      * 根据分类id查询菜品
@@ -58,8 +66,9 @@ public interface DishService {
      * 根据id修改菜品基本信息和对应的口味信息
      *
      * @param dishDTO
+     * @return 修改前菜品所属的分类id
      */
-    void updateWithFlavor(DishDTO dishDTO);
+    Long updateWithFlavor(DishDTO dishDTO);
 
 
     /**
@@ -0,0 +1,18 @@
+package com.sky.service;
+
+import com.sky.vo.KitchenQueueVO;
+
+public interface KitchenService {
+
+    /**
+     * 查询后厨出餐队列
+     * @return
+     */
+    KitchenQueueVO getQueue();
+
+    /**
+     * 订单出餐，从队列中移除
+     * @param orderId
+     */
+    void done(Long orderId);
+}
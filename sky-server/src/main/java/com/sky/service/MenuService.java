@@ -0,0 +1,30 @@
+package com.sky.service;
+
+import com.sky.cache.MenuSnapshot;
+import com.sky.vo.MenuDeltaVO;
+import com.sky.vo.MenuSearchVO;
+
+public interface MenuService {
+
+    /**
+     * 获取当前菜单的快照，菜单数据发生变化后才会重新构建
+     * @return
+     */
+    MenuSnapshot getSnapshot();
+
+    /**
+     * 查询客户端版本号之后发生变更的菜单数据
+     * @param version 客户端当前的版本号
+     * @return
+     */
+    MenuDeltaVO getDelta(Long version);
+
+    /**
+     * 按名称、拼音首字母和描述搜索起售中的菜品和套餐
+     * @param keyword
+     * @param limit 菜品和套餐各自最多返回的数量
+     * @return
+     */
+    MenuSearchVO search(String keyword, Integer limit);
+
+}
@@ -0,0 +1,44 @@
+package com.sky.service;
+
+import com.sky.result.Result;
+import com.sky.utils.BusinessHours;
+
+public interface ShopService {
+
+    /**
+     * 设置店铺的营业状态
+     * @param status 1为营业中，0为打烊中
+     */
+    void setStatus(Integer status);
+
+    /**
+     * 获取店铺的营业状态
+     * @return
+     */
+    Integer getStatus();
+
+    /**
+     * 获取预先构建好的营业状态响应
+     * @return
+     */
+    Result<Integer> getStatusResult();
+
+    /**
+     * 店铺是否营业中
+     * @return
+     */
+    boolean isOpen();
+
+    /**
+     * 当前是否可以下单：营业中，并且处于配置的营业时间内时没有超过停止接单时间；
+     * 营业时间之外手动开店时可以下单，从未设置过营业状态时也可以下单
+     * @return
+     */
+    boolean acceptsOrders();
+
+    /**
+     * 设置编译好的营业时间，用于判断停止接单时间
+     * @param businessHours
+     */
+    void setBusinessHours(BusinessHours businessHours);
+}
@@ -3,12 +3,14 @@ package com.sky.service;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
 
     /**
-     * 微信登录
+     * 微信登录，调用微信接口期间不占用请求线程
      * @param userLoginDTO
      * @return
      */
-    User wxLogin(UserLoginDTO userLoginDTO);
+    CompletableFuture<User> wxLogin(UserLoginDTO userLoginDTO);
 }
@@ -2,12 +2,14 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogChangeLog;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
 import com.sky.entity.Category;
+import com.sky.enumeration.CatalogEntityType;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.CategoryMapper;
 import com.sky.mapper.DishMapper;
@@ -34,6 +36,8 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private CatalogChangeLog catalogChangeLog;
 
     /**
      * 新增分类
@@ -53,6 +57,7 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setCreateUser(BaseContext.getCurrentId());
         //category.setUpdateUser(BaseContext.getCurrentId());
 
+        //新增的分类默认为禁用状态，对客户端不可见，启用时才需要记录菜单目录变更
         categoryMapper.insert(category);
     }
 
@@ -89,6 +94,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         //删除分类数据
         categoryMapper.deleteById(id);
+        catalogChangeLog.record(CatalogEntityType.CATEGORY, id);
     }
 
     /**
@@ -104,6 +110,7 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.update(category);
+        catalogChangeLog.record(CatalogEntityType.CATEGORY, category.getId());
     }
 
     /**
@@ -119,6 +126,7 @@ public class CategoryServiceImpl implements CategoryService {
                 //.updateUser(BaseContext.getCurrentId())
                 .build();
         categoryMapper.update(category);
+        catalogChangeLog.record(CatalogEntityType.CATEGORY, id);
     }
 
     /**
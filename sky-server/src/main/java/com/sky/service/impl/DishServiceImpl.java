@@ -2,6 +2,8 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogChangeLog;
+import com.sky.cache.MenuIdFilter;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -9,12 +11,15 @@ import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
 import com.sky.entity.Setmeal;
+import com.sky.enumeration.CatalogEntityType;
 import com.sky.exception.DeletionNotAllowedException;
+import com.sky.exception.MenuItemNotFoundException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.search.MenuSearchIndex;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +29,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 @Service
@@ -38,35 +45,60 @@ public class DishServiceImpl implements DishService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private CatalogChangeLog catalogChangeLog;
+    @Autowired
+    private MenuIdFilter menuIdFilter;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
 
     /**
      * 菜品起售停售
      *
      * @param status
      * @param id
+     * @return 菜品所属的分类id
+     */
+    @Transactional
+    public Long startOrStop(Integer status, Long id) {
+        Dish dish = dishMapper.getById(id);
+        if (dish == null) {
+            throw new MenuItemNotFoundException(MessageConstant.DISH_NOT_FOUND);
+        }
+        startOrStopBatch(status, Collections.singletonList(id));
+        return dish.getCategoryId();
+    }
+
+    /**
+     * 批量起售停售菜品，例如某种食材用完时一次停售多个菜品
+     *
+     * @param status
+     * @param ids
      */
     @Transactional
-    public void startOrStop(Integer status, Long id) {
+    public void startOrStopBatch(Integer status, List<Long> ids) {
+        //空集合会生成 in () ，mysql语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        //sql:update dish set status = ? where id in (?,?,?)
         Dish dish = Dish.builder()
-                .id(id)
                 .status(status)
                 .build();
-        dishMapper.update(dish);
+        dishMapper.updateStatusByIds(dish, ids);
+        catalogChangeLog.record(CatalogEntityType.DISH, ids);
 
         if (status == StatusConstant.DISABLE) {
-            // 如果是停售操作，还需要将包含当前菜品的套餐也停售
-            List<Long> dishIds = new ArrayList<>();
-            dishIds.add(id);
+            // 如果是停售操作，还需要将包含这些菜品的套餐也停售
             // select setmeal_id from setmeal_dish where dish_id in (?,?,?)
-            List<Long> setmealIds = setmealDishMapper.getSetmealIdsByDishIds(dishIds);
+            List<Long> setmealIds = setmealDishMapper.getSetmealIdsByDishIds(ids);
             if (setmealIds != null && setmealIds.size() > 0) {
-                for (Long setmealId : setmealIds) {
-                    Setmeal setmeal = Setmeal.builder()
-                            .id(setmealId)
-                            .status(StatusConstant.DISABLE)
-                            .build();
-                    setmealMapper.update(setmeal);
-                }
+                //sql:update setmeal set status = 0 where id in (select setmeal_id from setmeal_dish where dish_id in (?,?,?))
+                Setmeal setmeal = Setmeal.builder()
+                        .status(StatusConstant.DISABLE)
+                        .build();
+                setmealMapper.updateStatusByDishIds(setmeal, ids);
+                catalogChangeLog.record(CatalogEntityType.SETMEAL, new LinkedHashSet<>(setmealIds));
             }
         }
     }
@@ -108,6 +140,8 @@ public class DishServiceImpl implements DishService {
         //     通过useGeneratedKeys开启获取插入数据时生成的主键值，赋值给keyProperty
         //     指定的属性值id
         Long dishId = dish.getId();
+        catalogChangeLog.record(CatalogEntityType.DISH, dishId);
+        menuIdFilter.addDish(dishId);
 
         //口味数据通过实体类的对象集合属性封装的，所以需要先把集合中的数据取出来
         List<DishFlavor> flavors = dishDTO.getFlavors();
@@ -137,6 +171,20 @@ public class DishServiceImpl implements DishService {
      * @return
      */
     public PageResult pageQuery(DishPageQueryDTO dishPageQueryDTO) {
+        //按名称查询时先从搜索索引中得到命中的菜品id，代替无法使用索引的 like '%name%'
+        dishPageQueryDTO.setIds(null);
+        String name = dishPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            List<Long> ids = menuSearchIndex.searchDishIdsByName(name);
+            if (ids != null) {
+                if (ids.isEmpty()) {
+                    return new PageResult(0, new ArrayList<>());
+                }
+                dishPageQueryDTO.setIds(ids);
+                dishPageQueryDTO.setName(null);
+            }
+        }
+
         //需要在查询功能之前开启分页功能：当前页的页码   每页显示的条数
         PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
         //这个方法有返回值为Page对象，里面保存的是分页之后的相关数据
@@ -152,16 +200,19 @@ public class DishServiceImpl implements DishService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
+        //空集合会生成 in () ，mysql语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
 
         //判断当前菜品是否能够删除---是否存在起售中的菜品？？
         //思路：遍历获取传入的id，根据id查询菜品dish中的status字段，0 停售 1 起售，
         //    如果是1代表是起售状态不能删除
-        for (Long id : ids) {
-            Dish dish = dishMapper.getById(id);//后绪步骤实现
-            if (dish.getStatus().equals(StatusConstant.ENABLE)) { //常量类方式
-                //当前菜品处于起售中，不能删除
-                throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
-            }
+        //sql:select count(id) from dish where status = 1 and id in (?,?,?)
+        Integer enabled = dishMapper.countEnabledByIds(ids);
+        if (enabled != null && enabled > 0) {
+            //存在起售中的菜品，不能删除
+            throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
         }
         //判断当前菜品是否能够删除---是否被套餐关联了？？
         //思路：菜品表 套餐表是多对多关系，它们的关系表为菜品套餐关系表setmeal_dish（菜品id 对应 套餐id）
@@ -193,6 +244,9 @@ public class DishServiceImpl implements DishService {
         //根据菜品id集合批量删除关联的口味数据
         //sql:delete from dish_flavor where dish_id in (?,?,?)
         dishFlavorMapper.deleteByDishIds(ids);
+
+        //记录菜单目录变更，客户端增量同步时会删除这些菜品
+        catalogChangeLog.record(CatalogEntityType.DISH, ids);
         }
 
     /**
@@ -203,6 +257,11 @@ public class DishServiceImpl implements DishService {
      */
     @Override
     public DishVO getByIdWithFlavor(Long id) {
+        //布隆过滤器判断一定不存在的id，直接拒绝，不再查询数据库
+        if (!menuIdFilter.mightContainDish(id)) {
+            throw new MenuItemNotFoundException(MessageConstant.DISH_NOT_FOUND);
+        }
+
         //根据id查询菜品数据
         Dish dish = dishMapper.getById(id); //删除的时候已经写过了，所以这里直接调用方法即可
 
@@ -234,10 +293,16 @@ public class DishServiceImpl implements DishService {
      *         传过来的这个口味,重新再来插入一遍这个数据就可以了。
      *
      * @param dishDTO
+     * @return 修改前菜品所属的分类id
      */
     @Override
     @Transactional
-    public void updateWithFlavor(DishDTO dishDTO) {
+    public Long updateWithFlavor(DishDTO dishDTO) {
+        Dish old = dishMapper.getById(dishDTO.getId());
+        if (old == null) {
+            throw new MenuItemNotFoundException(MessageConstant.DISH_NOT_FOUND);
+        }
+
         //说明：DishDTO含有口味数据，当前只是修改菜品的基本信息，所以直接传递DishDTO不合适，
         //     可以把DishDTO的数据拷贝到菜品的基本信息类Dish中更合适。
         Dish dish = new Dish();
@@ -249,6 +314,10 @@ public class DishServiceImpl implements DishService {
         //删除原有的口味数据
         dishFlavorMapper.deleteByDishId(dishDTO.getId());
 
+        //记录菜单目录变更：菜品基本信息和口味都被重写了
+        catalogChangeLog.record(CatalogEntityType.DISH, dishDTO.getId());
+        catalogChangeLog.record(CatalogEntityType.FLAVOR, dishDTO.getId());
+
         //重新插入口味数据
         //口味数据通过实体类的对象集合属性封装的，所以需要先把集合中的数据取出来
         List<DishFlavor> flavors = dishDTO.getFlavors();
@@ -269,6 +338,7 @@ public class DishServiceImpl implements DishService {
              * */
             dishFlavorMapper.insertBatch(flavors);
         }
+        return old.getCategoryId();
     }
 
 
@@ -0,0 +1,370 @@
+package com.sky.service.impl;
+
+import com.sky.constant.KitchenConstant;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangedEvent;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.KitchenService;
+import com.sky.vo.KitchenDishVO;
+import com.sky.vo.KitchenOrderVO;
+import com.sky.vo.KitchenQueueVO;
+import com.sky.websocket.WebSocketClusterBus;
+import com.sky.websocket.WebSocketTopics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 后厨出餐队列业务实现
+ *
+ * 队列保存在内存中，包含待接单和已接单的订单，按最晚开始制作时间排序：
+ * 最晚开始制作时间 = 预计送达时间 - 备餐时间，备餐时间按订单的菜品份数估算，
+ * 送达时间相同的订单，菜品多的排在前面。同时按菜品汇总待制作的份数，方便高峰期批量制作。
+ *
+ * 订单状态变化时增量更新队列，并通过WebSocket主题 shop:{id}:kitchen 推送变化；
+ * 多节点时通过redis频道通知其他节点更新各自的队列，推送只由发生变化的节点完成。
+ * 启动时从数据库重建队列，已出餐的订单记录在redis中，重建时排除。
+ */
+@Service
+@Slf4j
+public class KitchenServiceImpl implements KitchenService, MessageListener {
+
+    //消息类型，4表示后厨队列变化（1来单提醒，2用户催单，3订单状态变化）
+    public static final int TYPE_KITCHEN = 4;
+
+    private static final String ACTION_ADD = "add";
+    private static final String ACTION_REMOVE = "remove";
+
+    private static final List<Integer> QUEUED_STATUSES = Arrays.asList(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED);
+
+    private static final Comparator<KitchenOrderVO> PRIORITY = Comparator
+            .comparing(KitchenOrderVO::getStartBy)
+            .thenComparing(KitchenOrderVO::getOrderId);
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private WebSocketClusterBus clusterBus;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //区分频道消息来自哪个节点，自己发布的消息不处理
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    //以下三个字段由this锁保护
+    private final TreeSet<KitchenOrderVO> queue = new TreeSet<>(PRIORITY);
+    private final Map<Long, KitchenOrderVO> orders = new HashMap<>();
+    private final Map<String, Integer> dishes = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(KitchenConstant.KITCHEN_CHANNEL));
+        Gauge.builder("sky.kitchen.queue.size", this, KitchenServiceImpl::size)
+                .description("后厨队列中的订单数量")
+                .register(meterRegistry);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            //重建失败不影响启动，之后的订单状态变化仍然会进入队列
+            log.warn("重建后厨队列失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查询后厨出餐队列
+     * @return
+     */
+    public KitchenQueueVO getQueue() {
+        synchronized (this) {
+            return KitchenQueueVO.builder()
+                    .orders(new ArrayList<>(queue))
+                    .dishes(dishSummary())
+                    .build();
+        }
+    }
+
+    /**
+     * 订单出餐，从队列中移除，只有待接单和已接单的订单可以出餐
+     * @param orderId
+     */
+    public void done(Long orderId) {
+        Orders ordersDB = orderMapper.getById(orderId);
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        if (!QUEUED_STATUSES.contains(ordersDB.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        //每个订单单独过期，出餐24小时后自动删除
+        stringRedisTemplate.opsForValue().set(KitchenConstant.KITCHEN_DONE_KEY_PREFIX + orderId, "1",
+                KitchenConstant.KITCHEN_DONE_TTL_HOURS, TimeUnit.HOURS);
+        remove(orderId);
+    }
+
+    /**
+     * 订单状态变化时更新队列，在事务提交之后处理，保证能查询到订单的最新数据
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        try {
+            if (QUEUED_STATUSES.contains(event.getStatus())) {
+                add(event.getOrderId());
+            } else {
+                remove(event.getOrderId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("更新后厨队列失败，订单{}：{}", event.getOrderId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的队列变化
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|");
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long orderId = Long.valueOf(parts[2]);
+            if (ACTION_ADD.equals(parts[1])) {
+                KitchenOrderVO order = load(orderId);
+                if (order != null) {
+                    synchronized (this) {
+                        put(order);
+                    }
+                }
+            } else if (ACTION_REMOVE.equals(parts[1])) {
+                synchronized (this) {
+                    take(orderId);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("处理后厨队列消息失败：{}，{}", body, e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库加载订单并加入队列
+     */
+    private void add(Long orderId) {
+        if (isDone(orderId)) {
+            return;
+        }
+        KitchenOrderVO order = load(orderId);
+        if (order == null) {
+            return;
+        }
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", TYPE_KITCHEN);
+        message.put("action", ACTION_ADD);
+        message.put("order", order);
+        synchronized (this) {
+            put(order);
+            message.put("dishes", dishSummary());
+        }
+        push(message);
+        notifyNodes(ACTION_ADD, orderId);
+    }
+
+    private void remove(Long orderId) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", TYPE_KITCHEN);
+        message.put("action", ACTION_REMOVE);
+        message.put("orderId", orderId);
+        boolean removed;
+        synchronized (this) {
+            removed = take(orderId);
+            message.put("dishes", dishSummary());
+        }
+        if (removed) {
+            push(message);
+        }
+        //本节点没有这个订单时，其他节点的队列中可能仍然有，同样需要通知
+        notifyNodes(ACTION_REMOVE, orderId);
+    }
+
+    /**
+     * 从数据库重建队列
+     */
+    private void rebuild() {
+        List<Orders> ordersList = orderMapper.getByStatuses(QUEUED_STATUSES);
+        if (!ordersList.isEmpty()) {
+            //一次批量查询队列中的订单是否已经出餐
+            List<String> keys = ordersList.stream()
+                    .map(o -> KitchenConstant.KITCHEN_DONE_KEY_PREFIX + o.getId())
+                    .collect(Collectors.toList());
+            List<String> done = stringRedisTemplate.opsForValue().multiGet(keys);
+            if (done != null) {
+                List<Orders> pending = new ArrayList<>();
+                for (int i = 0; i < ordersList.size(); i++) {
+                    if (done.get(i) == null) {
+                        pending.add(ordersList.get(i));
+                    }
+                }
+                ordersList = pending;
+            }
+        }
+        Map<Long, List<OrderDetail>> details = Collections.emptyMap();
+        if (!ordersList.isEmpty()) {
+            List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+            details = orderDetailMapper.getByOrderIds(orderIds).stream()
+                    .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+        }
+        synchronized (this) {
+            queue.clear();
+            orders.clear();
+            dishes.clear();
+            for (Orders o : ordersList) {
+                put(toVO(o, details.getOrDefault(o.getId(), Collections.emptyList())));
+            }
+        }
+        log.info("后厨队列重建完成，共{}个订单", ordersList.size());
+    }
+
+    private KitchenOrderVO load(Long orderId) {
+        Orders o = orderMapper.getById(orderId);
+        if (o == null || !QUEUED_STATUSES.contains(o.getStatus())) {
+            return null;
+        }
+        return toVO(o, orderDetailMapper.getByOrderId(orderId));
+    }
+
+    private boolean isDone(Long orderId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(KitchenConstant.KITCHEN_DONE_KEY_PREFIX + orderId));
+    }
+
+    private KitchenOrderVO toVO(Orders o, List<OrderDetail> items) {
+        int quantity = 0;
+        for (OrderDetail item : items) {
+            quantity += quantity(item);
+        }
+        int prepMinutes = Math.min(KitchenConstant.MAX_PREP_MINUTES,
+                KitchenConstant.BASE_PREP_MINUTES + quantity * KitchenConstant.PREP_MINUTES_PER_ITEM);
+        LocalDateTime deliveryTime = o.getEstimatedDeliveryTime();
+        if (deliveryTime == null) {
+            LocalDateTime from = o.getCheckoutTime() != null ? o.getCheckoutTime() : o.getOrderTime();
+            if (from == null) {
+                from = LocalDateTime.now();
+            }
+            deliveryTime = from.plusMinutes(KitchenConstant.DEFAULT_DELIVERY_MINUTES);
+        }
+        return KitchenOrderVO.builder()
+                .orderId(o.getId())
+                .number(o.getNumber())
+                .status(o.getStatus())
+                .remark(o.getRemark())
+                .estimatedDeliveryTime(deliveryTime)
+                .startBy(deliveryTime.minusMinutes(prepMinutes))
+                .prepMinutes(prepMinutes)
+                .items(items)
+                .build();
+    }
+
+    /**
+     * 加入队列，已经存在时替换，调用时持有this锁
+     */
+    private void put(KitchenOrderVO order) {
+        take(order.getOrderId());
+        queue.add(order);
+        orders.put(order.getOrderId(), order);
+        for (OrderDetail item : order.getItems()) {
+            dishes.merge(dishName(item), quantity(item), Integer::sum);
+        }
+    }
+
+    /**
+     * 移出队列，调用时持有this锁
+     * @return 订单是否在队列中
+     */
+    private boolean take(Long orderId) {
+        KitchenOrderVO order = orders.remove(orderId);
+        if (order == null) {
+            return false;
+        }
+        queue.remove(order);
+        for (OrderDetail item : order.getItems()) {
+            //减到0时移除这个菜品
+            dishes.computeIfPresent(dishName(item), (name, number) -> number > quantity(item) ? number - quantity(item) : null);
+        }
+        return true;
+    }
+
+    /**
+     * 按菜品汇总的待制作份数，调用时持有this锁
+     */
+    private List<KitchenDishVO> dishSummary() {
+        return dishes.entrySet().stream()
+                .map(e -> KitchenDishVO.builder().name(e.getKey()).number(e.getValue()).build())
+                .sorted(Comparator.comparing(KitchenDishVO::getNumber).reversed().thenComparing(KitchenDishVO::getName))
+                .collect(Collectors.toList());
+    }
+
+    private synchronized int size() {
+        return queue.size();
+    }
+
+    private void push(Map<String, Object> message) {
+        try {
+            clusterBus.publish(WebSocketTopics.shopKitchen(WebSocketTopics.DEFAULT_SHOP_ID), message);
+        } catch (RuntimeException e) {
+            //推送失败不影响队列，后厨页面重连后重新查询队列
+            log.warn("推送后厨队列变化失败：{}", e.getMessage());
+        }
+    }
+
+    private void notifyNodes(String action, Long orderId) {
+        try {
+            stringRedisTemplate.convertAndSend(KitchenConstant.KITCHEN_CHANNEL, nodeId + "|" + action + "|" + orderId);
+        } catch (RuntimeException e) {
+            log.warn("通知其他节点后厨队列变化失败：{}", e.getMessage());
+        }
+    }
+
+    private static String dishName(OrderDetail item) {
+        String flavor = item.getDishFlavor();
+        return flavor == null || flavor.isEmpty() ? item.getName() : item.getName() + "（" + flavor + "）";
+    }
+
+    private static int quantity(OrderDetail item) {
+        return item.getNumber() == null ? 1 : item.getNumber();
+    }
+}
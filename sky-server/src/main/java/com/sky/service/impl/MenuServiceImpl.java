@@ -0,0 +1,286 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogChangeLog;
+import com.sky.cache.MenuSnapshot;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.enumeration.CatalogEntityType;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.result.Result;
+import com.sky.search.MenuSearchIndex;
+import com.sky.service.MenuService;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuDeltaVO;
+import com.sky.vo.MenuSearchVO;
+import com.sky.vo.MenuVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 菜单快照业务实现
+ */
+@Service
+@Slf4j
+public class MenuServiceImpl implements MenuService {
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private CatalogChangeLog catalogChangeLog;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    //搜索默认和最多返回的数量
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 50;
+
+    private final JacksonObjectMapper objectMapper = new JacksonObjectMapper();
+
+    //当前节点上已经构建好的快照
+    private volatile MenuSnapshot snapshot;
+
+    /**
+     * 获取当前菜单的快照
+     * 每次只需要读取一次菜单目录版本号，版本号没有变化时直接返回已经序列化好的字节数组
+     * @return
+     */
+    public MenuSnapshot getSnapshot() {
+        long version = catalogChangeLog.currentVersion();
+        MenuSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        return rebuild(version);
+    }
+
+    /**
+     * 查询客户端版本号之后发生变更的菜单数据
+     * 变更实体的最新状态直接从当前快照中获取：快照中存在的即为新增或修改，不存在的即为删除或不可见，
+     * 整个过程不需要查询数据库。有分类被禁用或删除时返回全量数据。
+     * @param version
+     * @return
+     */
+    public MenuDeltaVO getDelta(Long version) {
+        MenuSnapshot current = getSnapshot();
+        Map<CatalogEntityType, Set<Long>> changes = version == null ? null
+                : catalogChangeLog.changesSince(version, current.getVersion());
+
+        //变更日志已经被压缩，或者客户端没有版本号，只能返回全量数据
+        if (changes == null) {
+            return full(current);
+        }
+
+        //分类被禁用或删除后，快照中已经没有它下面的菜品和套餐，无法得知需要删除哪些，返回全量数据
+        Set<Long> categoryIds = changes.getOrDefault(CatalogEntityType.CATEGORY, Collections.emptySet());
+        for (Long categoryId : categoryIds) {
+            if (!current.getCategoryIndex().containsKey(categoryId)) {
+                return full(current);
+            }
+        }
+
+        MenuDeltaVO delta = MenuDeltaVO.builder()
+                .version(current.getVersion())
+                .full(false)
+                .build();
+
+        Set<Long> dishIds = new HashSet<>(changes.getOrDefault(CatalogEntityType.DISH, Collections.emptySet()));
+        dishIds.addAll(changes.getOrDefault(CatalogEntityType.FLAVOR, Collections.emptySet()));
+        Set<Long> setmealIds = new HashSet<>(changes.getOrDefault(CatalogEntityType.SETMEAL, Collections.emptySet()));
+
+        for (Long categoryId : categoryIds) {
+            delta.getCategories().add(current.getCategoryIndex().get(categoryId));
+            //分类可能是刚刚被启用的，需要把它下面的菜品和套餐一起下发
+            current.getMenu().getDishes().stream()
+                    .filter(dish -> categoryId.equals(dish.getCategoryId()))
+                    .forEach(dish -> dishIds.add(dish.getId()));
+            current.getMenu().getSetmeals().stream()
+                    .filter(setmeal -> categoryId.equals(setmeal.getCategoryId()))
+                    .forEach(setmeal -> setmealIds.add(setmeal.getId()));
+        }
+
+        for (Long dishId : dishIds) {
+            DishVO dish = current.getDishIndex().get(dishId);
+            if (dish == null) {
+                delta.getRemovedDishIds().add(dishId);
+            } else {
+                delta.getDishes().add(dish);
+            }
+        }
+
+        for (Long setmealId : setmealIds) {
+            Setmeal setmeal = current.getSetmealIndex().get(setmealId);
+            if (setmeal == null) {
+                delta.getRemovedSetmealIds().add(setmealId);
+            } else {
+                delta.getSetmeals().add(setmeal);
+            }
+        }
+        return delta;
+    }
+
+    private MenuDeltaVO full(MenuSnapshot current) {
+        MenuVO menu = current.getMenu();
+        return MenuDeltaVO.builder()
+                .version(current.getVersion())
+                .full(true)
+                .categories(menu.getCategories())
+                .dishes(menu.getDishes())
+                .setmeals(menu.getSetmeals())
+                .build();
+    }
+
+    /**
+     * 搜索菜品和套餐
+     * 搜索索引只返回排好序的id，实体从当前快照中获取，停售或分类被禁用的自然被过滤掉
+     * @param keyword
+     * @param limit
+     * @return
+     */
+    public MenuSearchVO search(String keyword, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        MenuSnapshot current = getSnapshot();
+
+        List<DishVO> dishes = new ArrayList<>();
+        for (Long dishId : menuSearchIndex.searchDishes(keyword, 0)) {
+            DishVO dish = current.getDishIndex().get(dishId);
+            if (dish != null) {
+                dishes.add(dish);
+                if (dishes.size() >= size) {
+                    break;
+                }
+            }
+        }
+
+        List<Setmeal> setmeals = new ArrayList<>();
+        for (Long setmealId : menuSearchIndex.searchSetmeals(keyword, 0)) {
+            Setmeal setmeal = current.getSetmealIndex().get(setmealId);
+            if (setmeal != null) {
+                setmeals.add(setmeal);
+                if (setmeals.size() >= size) {
+                    break;
+                }
+            }
+        }
+
+        return MenuSearchVO.builder()
+                .dishes(dishes)
+                .setmeals(setmeals)
+                .build();
+    }
+
+    /**
+     * 重新构建快照，同一时刻只允许一个线程构建，其余线程等待后直接复用结果
+     * @param version
+     * @return
+     */
+    private synchronized MenuSnapshot rebuild(long version) {
+        MenuSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+
+        long start = System.currentTimeMillis();
+        MenuVO menuVO = loadMenu(version);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Result.success(menuVO));
+            byte[] gzip = gzip(json);
+            current = new MenuSnapshot(version, etag(json), json, gzip, menuVO);
+        } catch (IOException e) {
+            throw new IllegalStateException("菜单快照序列化失败", e);
+        }
+        snapshot = current;
+        log.info("菜单快照构建完成，版本：{}，大小：{}字节，压缩后：{}字节，耗时：{}ms",
+                version, current.getJson().length, current.getGzip().length, System.currentTimeMillis() - start);
+        return current;
+    }
+
+    /**
+     * 查询启用的分类、起售中的菜品（含口味）和套餐
+     * @param version
+     * @return
+     */
+    private MenuVO loadMenu(long version) {
+        List<Category> categories = categoryMapper.list(null);
+        Set<Long> categoryIds = categories.stream().map(Category::getId).collect(Collectors.toSet());
+
+        //只保留启用分类下的菜品，分类被禁用后客户端也无法看到这些菜品
+        Dish condition = Dish.builder().status(StatusConstant.ENABLE).build();
+        List<Dish> dishList = dishMapper.list(condition).stream()
+                .filter(dish -> categoryIds.contains(dish.getCategoryId()))
+                .collect(Collectors.toList());
+
+        //一次性批量查询所有菜品的口味，避免逐个菜品查询
+        Map<Long, List<DishFlavor>> flavorMap = Collections.emptyMap();
+        if (!dishList.isEmpty()) {
+            List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+            flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                    .collect(Collectors.groupingBy(DishFlavor::getDishId));
+        }
+
+        List<DishVO> dishes = new ArrayList<>(dishList.size());
+        for (Dish dish : dishList) {
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(dish, dishVO);
+            dishVO.setFlavors(flavorMap.getOrDefault(dish.getId(), new ArrayList<>()));
+            dishes.add(dishVO);
+        }
+
+        Setmeal setmealCondition = Setmeal.builder().status(StatusConstant.ENABLE).build();
+        List<Setmeal> setmeals = setmealMapper.list(setmealCondition).stream()
+                .filter(setmeal -> categoryIds.contains(setmeal.getCategoryId()))
+                .collect(Collectors.toList());
+
+        return MenuVO.builder()
+                .version(version)
+                .categories(categories)
+                .dishes(dishes)
+                .setmeals(setmeals)
+                .build();
+    }
+
+    private byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private String etag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return "\"" + String.format("%064x", new BigInteger(1, digest)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,23 +1,28 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.entity.*;
+import com.sky.event.OrderStatusChangedEvent;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.properties.RateLimitProperties;
 import com.sky.service.OrderService;
+import com.sky.service.ShopService;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.websocket.WebSocketServer;
+import com.sky.websocket.WebSocketTopics;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,6 +32,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class OrderServiceImpl implements OrderService {
@@ -45,6 +51,17 @@ public class OrderServiceImpl implements OrderService {
     private WeChatPayUtil weChatPayUtil;
     @Autowired
     private WebSocketServer webSocketServer;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    //催单冷却期的key前缀
+    private static final String REMINDER_KEY_PREFIX = "order:reminder:";
+    @Autowired
+    private ShopService shopService;
     /**
      * 用户下单
      * @param ordersSubmitDTO
@@ -60,6 +77,10 @@ public class OrderServiceImpl implements OrderService {
          *   小程序提交的而是通过其它的一些方式 比如postman来提交这些请求，这个时候
          *   是没有任何校验的，此时后端在不校验那再处理的时候可能就会出现各种问题。
          */
+        //1.0 店铺打烊或超过停止接单时间时不能下单，营业状态和营业时间都保存在本地，不需要访问redis
+        if (!shopService.acceptsOrders()) {
+            throw new OrderBusinessException(MessageConstant.SHOP_CLOSED);
+        }
         //1.1 通过前端传递过来的地址簿id查询数据库是否有收货地址，如果查不到则抛出异常。
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
         if (addressBook == null) {
@@ -179,6 +200,8 @@ public class OrderServiceImpl implements OrderService {
                 .checkoutTime(LocalDateTime.now())
                 .build();
         orderMapper.update(orders);
+        applicationEventPublisher.publishEvent(new OrderStatusChangedEvent(
+                ordersDB.getId(), ordersDB.getUserId(), ordersDB.getNumber(), Orders.TO_BE_CONFIRMED));
 
         //通过webSocketServer向客户端浏览器推送消息
         //要求推送的消息格式是json类型，并且包含3个字段（type、orderId、content）
@@ -187,10 +210,8 @@ public class OrderServiceImpl implements OrderService {
         map.put("orderId", orders.getId()); //订单的id
         map.put("content", "订单号：" + outTradeNo);//订单号
 
-        //转化为json格式
-        String json = JSON.toJSONString(map);
-        //通过WebSocket实现来单提醒，向客户端浏览器推送消息(调用WebSocketServer类中群发的方法)
-        webSocketServer.sendToAllClient(json);
+        //通过WebSocket实现来单提醒，推送给订阅了店铺订单提醒的客户端浏览器
+        webSocketServer.publish(WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID), map);
     }
 
     /**
@@ -199,12 +220,23 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     public void reminder(Long id) {
+        // 冷却时间内同一个用户重复催同一个订单，商家已经收到过提醒，直接返回，不再查询数据库和推送
+        // key包含用户id，其他用户催这个订单不会占用订单主人的冷却期
+        Long userId = BaseContext.getCurrentId();
+        String key = REMINDER_KEY_PREFIX + userId + ":" + id;
+        Boolean first = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, "1", rateLimitProperties.getReminderCooldownSeconds(), TimeUnit.SECONDS);
+        if (Boolean.FALSE.equals(first)) {
+            return;
+        }
+
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
 
-        // 校验订单是否存在
-        if (ordersDB == null ) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        // 校验订单是否存在，只能催自己的订单
+        if (ordersDB == null || !ordersDB.getUserId().equals(userId)) {
+            stringRedisTemplate.delete(key);
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
         //基于WebSocket实现催单
@@ -213,8 +245,8 @@ public class OrderServiceImpl implements OrderService {
         map.put("orderId", id);//订单的id
         map.put("content", "订单号：" + ordersDB.getNumber());//订单号
 
-        //参数需要json类型，所以需要进行转化(调用WebSocketServer组件中群发的方法)
-        webSocketServer.sendToAllClient(JSON.toJSONString(map));
+        //推送给订阅了店铺订单提醒的客户端浏览器
+        webSocketServer.publish(WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID), map);
     }
 
 
@@ -2,6 +2,8 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogChangeLog;
+import com.sky.cache.MenuIdFilter;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -9,12 +11,15 @@ import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
+import com.sky.enumeration.CatalogEntityType;
 import com.sky.exception.DeletionNotAllowedException;
+import com.sky.exception.MenuItemNotFoundException;
 import com.sky.exception.SetmealEnableFailedException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.search.MenuSearchIndex;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -23,6 +28,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -38,6 +44,12 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private CatalogChangeLog catalogChangeLog;
+    @Autowired
+    private MenuIdFilter menuIdFilter;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -53,6 +65,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         //获取生成的套餐id
         Long setmealId = setmeal.getId();
+        catalogChangeLog.record(CatalogEntityType.SETMEAL, setmealId);
+        menuIdFilter.addSetmeal(setmealId);
 
         List<SetmealDish> setmealDishes = setmealDTO.getSetmealDishes();
         setmealDishes.forEach(setmealDish -> {
@@ -69,6 +83,20 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
+        //按名称查询时先从搜索索引中得到命中的套餐id，代替无法使用索引的 like '%name%'
+        setmealPageQueryDTO.setIds(null);
+        String name = setmealPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            List<Long> ids = menuSearchIndex.searchSetmealIdsByName(name);
+            if (ids != null) {
+                if (ids.isEmpty()) {
+                    return new PageResult(0, new ArrayList<>());
+                }
+                setmealPageQueryDTO.setIds(ids);
+                setmealPageQueryDTO.setName(null);
+            }
+        }
+
         int pageNum = setmealPageQueryDTO.getPage();
         int pageSize = setmealPageQueryDTO.getPageSize();
 
@@ -83,20 +111,23 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
-        ids.forEach(id -> {
-            Setmeal setmeal = setmealMapper.getById(id);
-            if(StatusConstant.ENABLE == setmeal.getStatus()){
-                //起售中的套餐不能删除
-                throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
-            }
-        });
+        //空集合会生成 in () ，mysql语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        //一条sql统计起售中的套餐，起售中的套餐不能删除
+        Integer enabled = setmealMapper.countEnabledByIds(ids);
+        if (enabled != null && enabled > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
+        }
 
-        ids.forEach(setmealId -> {
-            //删除套餐表中的数据
-            setmealMapper.deleteById(setmealId);
-            //删除套餐菜品关系表中的数据
-            setmealDishMapper.deleteBySetmealId(setmealId);
-        });
+        //删除套餐表中的数据
+        //sql:delete from setmeal where id in (?,?,?)
+        setmealMapper.deleteByIds(ids);
+        //删除套餐菜品关系表中的数据
+        //sql:delete from setmeal_dish where setmeal_id in (?,?,?)
+        setmealDishMapper.deleteBySetmealIds(ids);
+        catalogChangeLog.record(CatalogEntityType.SETMEAL, ids);
     }
 
     /**
@@ -106,6 +137,11 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public SetmealVO getByIdWithDish(Long id) {
+        //布隆过滤器判断一定不存在的id，直接拒绝，不再查询数据库
+        if (!menuIdFilter.mightContainSetmeal(id)) {
+            throw new MenuItemNotFoundException(MessageConstant.SETMEAL_NOT_FOUND);
+        }
+
         Setmeal setmeal = setmealMapper.getById(id);
         List<SetmealDish> setmealDishes = setmealDishMapper.getBySetmealId(id);
 
@@ -131,6 +167,7 @@ public class SetmealServiceImpl implements SetmealService {
 
         //套餐id
         Long setmealId = setmealDTO.getId();
+        catalogChangeLog.record(CatalogEntityType.SETMEAL, setmealId);
 
         //2、删除套餐和菜品的关联关系，操作setmeal_dish表，执行delete
         setmealDishMapper.deleteBySetmealId(setmealId);
@@ -167,6 +204,7 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+        catalogChangeLog.record(CatalogEntityType.SETMEAL, id);
     }
 
     /**
@@ -185,6 +223,9 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public List<DishItemVO> getDishItemById(Long id) {
+        if (!menuIdFilter.mightContainSetmeal(id)) {
+            return new ArrayList<>();
+        }
         return setmealMapper.getDishItemBySetmealId(id);
     }
 }
@@ -0,0 +1,140 @@
+package com.sky.service.impl;
+
+import com.sky.constant.ShopConstant;
+import com.sky.result.Result;
+import com.sky.service.ShopService;
+import com.sky.utils.BusinessHours;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 店铺营业状态业务实现
+ *
+ * 营业状态保存在本地volatile字段中，查询时不访问redis。
+ * 修改状态时写入redis并在频道上发布新状态，所有节点收到消息后更新本地状态；
+ * 另外定时从redis重新读取一次，防止断线期间丢失消息。
+ */
+@Service
+@Slf4j
+public class ShopServiceImpl implements ShopService, MessageListener {
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    //本地的营业状态和对应的响应，两者一起替换
+    private volatile State state = new State(null);
+
+    //编译好的营业时间，没有开启自动营业时为null
+    private volatile BusinessHours businessHours;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(ShopConstant.SHOP_STATUS_CHANNEL));
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            //redis不可用时不影响启动，营业状态由每分钟的定时刷新补上
+            log.warn("读取店铺营业状态失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 设置店铺的营业状态
+     * @param status
+     */
+    public void setStatus(Integer status) {
+        redisTemplate.opsForValue().set(ShopConstant.SHOP_STATUS_KEY, status);
+        update(status);
+        //通知其他节点
+        stringRedisTemplate.convertAndSend(ShopConstant.SHOP_STATUS_CHANNEL, String.valueOf(status));
+    }
+
+    public Integer getStatus() {
+        return state.status;
+    }
+
+    public Result<Integer> getStatusResult() {
+        return state.result;
+    }
+
+    public boolean isOpen() {
+        return ShopConstant.OPEN.equals(state.status);
+    }
+
+    public boolean acceptsOrders() {
+        Integer status = state.status;
+        //从未设置过营业状态（新部署，redis中没有这个key）时不拦截下单，与增加营业状态检查之前的行为一致
+        if (status == null) {
+            return true;
+        }
+        if (!ShopConstant.OPEN.equals(status)) {
+            return false;
+        }
+        //停止接单时间只在营业时间内生效；营业时间之外手动开店的，到下一次开店或打烊之前一直可以下单
+        BusinessHours hours = businessHours;
+        long now = System.currentTimeMillis();
+        return hours == null || !hours.isOpen(now) || hours.acceptsOrders(now);
+    }
+
+    public void setBusinessHours(BusinessHours businessHours) {
+        this.businessHours = businessHours;
+    }
+
+    /**
+     * 收到其他节点发布的营业状态
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            update(Integer.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("无法识别的店铺营业状态消息：{}", body);
+        }
+    }
+
+    /**
+     * 每分钟从redis重新读取营业状态
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void refresh() {
+        update((Integer) redisTemplate.opsForValue().get(ShopConstant.SHOP_STATUS_KEY));
+    }
+
+    private void update(Integer status) {
+        State current = state;
+        if (current.status == null ? status == null : current.status.equals(status)) {
+            return;
+        }
+        state = new State(status);
+        log.info("店铺营业状态变更为：{}", ShopConstant.OPEN.equals(status) ? "营业中" : "打烊中");
+    }
+
+    private static class State {
+
+        private final Integer status;
+        private final Result<Integer> result;
+
+        private State(Integer status) {
+            this.status = status;
+            this.result = Result.success(status);
+        }
+    }
+}
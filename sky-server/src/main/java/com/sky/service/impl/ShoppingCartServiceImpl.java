@@ -1,10 +1,13 @@
 package com.sky.service.impl;
 
+import com.sky.cache.MenuIdFilter;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
@@ -27,6 +30,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuIdFilter menuIdFilter;
 
     /**
      * 添加购物车
@@ -46,6 +51,15 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        //布隆过滤器判断一定不存在的菜品或套餐，直接拒绝，不再查询数据库
+        if (shoppingCartDTO.getDishId() != null) {
+            if (!menuIdFilter.mightContainDish(shoppingCartDTO.getDishId())) {
+                throw new ShoppingCartBusinessException(MessageConstant.DISH_NOT_FOUND);
+            }
+        } else if (!menuIdFilter.mightContainSetmeal(shoppingCartDTO.getSetmealId())) {
+            throw new ShoppingCartBusinessException(MessageConstant.SETMEAL_NOT_FOUND);
+        }
+
         //构造ShoppingCart封装请求参数，因为它包含用户的id。
         ShoppingCart shoppingCart = new ShoppingCart();
         //对象属性拷贝：dishId、setmealId、dishFlavor
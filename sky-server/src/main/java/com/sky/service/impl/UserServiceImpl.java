@@ -2,9 +2,14 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
+import com.sky.context.RequestContext;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
+import com.sky.exception.BaseException;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
@@ -12,11 +17,19 @@ import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -30,66 +43,144 @@ public class UserServiceImpl implements UserService {
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    @Qualifier("loginExecutor")
+    private Executor loginExecutor;
+
+    //限制同时进行中的微信接口调用数量
+    private Semaphore wechatPermits;
+
+    //本地缓存openid对应的用户，用户的id和注册时间不会变化
+    private final Cache<String, User> localUsers = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        wechatPermits = new Semaphore(weChatProperties.getLoginMaxConcurrency());
+    }
 
     /**
      * 微信登录
      * 传统的用户名密码登录：需要去查询我们自己的用户表，然后去检查用户名和密码是否正确。
      * 微信用户登录：调用之前学习的微信服务器接口，通过code授权码换取 用户唯一标识 OpenID
      *
+     * 调用微信接口使用异步客户端，同时进行中的调用数量有上限，超过上限直接返回登录繁忙，
+     * 拿到openid之后切换到登录线程池查询用户，openid对应的用户依次从本地缓存、redis、数据库获取。
      *
      * @param userLoginDTO
      * @return
      */
-    public User wxLogin(UserLoginDTO userLoginDTO) {
+    public CompletableFuture<User> wxLogin(UserLoginDTO userLoginDTO) {
+        if (!wechatPermits.tryAcquire()) {
+            CompletableFuture<User> busy = new CompletableFuture<>();
+            busy.completeExceptionally(new LoginFailedException(MessageConstant.LOGIN_BUSY));
+            return busy;
+        }
+
         //1.调用微信接口服务，获得当前微信用户的OpenID
-        String openid = getOpenid(userLoginDTO.getCode());
+        CompletableFuture<String> json;
+        try {
+            json = HttpClientUtil.doGetAsync(WX_LOGIN, buildParams(userLoginDTO.getCode()), weChatProperties.getLoginTimeoutMsec());
+        } catch (RuntimeException e) {
+            wechatPermits.release();
+            throw e;
+        }
+        json.whenComplete((body, ex) -> wechatPermits.release());
 
-        //2.判断openid是否为空，如果为空表示登录失败，抛出业务异常
-        if(openid == null){
+        //回调在http客户端的I/O线程上提交到登录线程池，需要在这里复制请求上下文
+        return json.thenApplyAsync(RequestContext.wrapFunction(body -> {
+            //2.判断openid是否为空，如果为空表示登录失败，抛出业务异常
+            String openid = parseOpenid(body);
+            if (openid == null) {
+                throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+            }
+            //3.如果不为空说明这是一个合法的微信用户，查询或自动注册用户
+            //  同一个openid并发登录时只有一个线程加载，其余线程等待它的结果
+            return localUsers.get(openid, this::loadOrRegister);
+        }), loginExecutor).handle((user, ex) -> {
+            if (ex == null) {
+                return user;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof BaseException) {
+                throw (BaseException) cause;
+            }
+            log.warn("微信登录失败：{}", cause.getMessage());
             throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        });
+    }
+
+    /**
+     * 根据openid从redis或数据库获取用户，新用户自动完成注册
+     * @param openid
+     * @return
+     */
+    private User loadOrRegister(String openid) {
+        String key = CacheConstant.USER_OPENID_KEY_PREFIX + openid;
+        User user = (User) redisTemplate.opsForValue().get(key);
+        if (user != null) {
+            return user;
         }
 
-        //3.如果不为空说明这是一个合法的微信用户
         // 3.1判断当前用户是否为新用户（当前这个微信用户的openid是否在用户表里存储，如果没有代表是一个新用户）
-        User user = userMapper.getByOpenid(openid);
+        user = userMapper.getByOpenid(openid);
 
         // 3.2如果是新用户，自动完成注册（封装到user对象，保存在用户表中）
-        if(user == null){
+        if (user == null) {
             //现在只能获取到用户的唯一标识、注册的时间。像其他的性别 身份证号 手机号获取不到
             //   后续根据个人中心去完善业务信息。
             user = User.builder()
                     .openid(openid)
                     .createTime(LocalDateTime.now())
                     .build();
-            userMapper.insert(user);//后绪步骤实现
+            //其他节点同时注册了同一个openid时插入被忽略，重新查询已经存在的用户
+            if (userMapper.insertIgnore(user) == 0) {
+                user = userMapper.getByOpenid(openid);
+            }
         }
 
-        //返回这个用户对象
-        return user;
+        //只缓存登录需要的id、openid和注册时间
+        User cached = User.builder()
+                .id(user.getId())
+                .openid(user.getOpenid())
+                .createTime(user.getCreateTime())
+                .build();
+        redisTemplate.opsForValue().set(key, cached, CacheConstant.USER_OPENID_TTL_DAYS, TimeUnit.DAYS);
+        return cached;
     }
 
     /**
-     * 调用微信接口服务，获取微信用户的openid
+     * 构造调用微信接口服务获取openid的请求参数
      * 业务层发送请求调用接口，通过封装好的HttpClient的工具类HttpClientUtil实现
      * HttpClient作用：可以在java程序中通过编码的方式来发送http请求
      * @param code
      * @return
      */
-    private String getOpenid(String code){ //ctrl+alt+m：选中代码抽取一个方法
-        //调用微信接口服务，获得当前微信用户的openid
+    private Map<String, String> buildParams(String code){
         Map<String, String> map = new HashMap<>();
         map.put("appid",weChatProperties.getAppid());//小程序生成的唯一标识appid，注意不是用户的唯一标识openid 配置文件属性类获取
         map.put("secret",weChatProperties.getSecret());//小程序生成的秘钥  配置文件属性类获取
         map.put("js_code",code); //授权码，通过前端传递过来的参数获取
         map.put("grant_type","authorization_code");//授权类型 固定值
-        //url地址    封装的请求参数
-        //返回的结果是一个json字符串
-        String json = HttpClientUtil.doGet(WX_LOGIN, map);
+        return map;
+    }
 
+    /**
+     * 解析微信接口返回的json字符串，获取openid
+     * @param json
+     * @return
+     */
+    private String parseOpenid(String json){
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
         //将json字符串解析为json对象，通过k获取它的v
         JSONObject jsonObject = JSON.parseObject(json);
-        String openid = jsonObject.getString("openid");
-        return openid;
+        return jsonObject.getString("openid");
     }
 }
 
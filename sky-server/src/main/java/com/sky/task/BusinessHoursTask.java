@@ -0,0 +1,85 @@
+package com.sky.task;
+
+import com.sky.constant.ShopConstant;
+import com.sky.properties.BusinessHoursProperties;
+import com.sky.service.ShopService;
+import com.sky.utils.BusinessHours;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 按营业时间自动开店、打烊
+ *
+ * 启动时编译营业时间并设置当前的营业状态，然后只在下一次开店或打烊的时刻触发一次，
+ * 触发时重新编译并预约下一次，不需要按固定频率轮询。
+ * 手动设置的营业状态会在下一次开店或打烊时被覆盖。
+ */
+@Component
+@Slf4j
+public class BusinessHoursTask {
+
+    //没有下一次开店或打烊时间时，最多隔一天重新检查一次配置
+    private static final long MAX_DELAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    //设置营业状态失败后重试的间隔
+    private static final long RETRY_DELAY_MILLIS = 60 * 1000L;
+
+    @Autowired
+    private BusinessHoursProperties businessHoursProperties;
+    @Autowired
+    private ShopService shopService;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private ScheduledFuture<?> next;
+
+    /**
+     * 应用启动完成后开始调度
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!businessHoursProperties.isEnabled()) {
+            return;
+        }
+        reschedule();
+    }
+
+    /**
+     * 编译营业时间、按当前时刻设置营业状态，并预约下一次开店或打烊
+     * 失败时（例如redis不可用）一分钟后重试，无论成功与否都会预约下一次，自动开店、打烊不会中断
+     */
+    public synchronized void reschedule() {
+        long now = System.currentTimeMillis();
+        long at;
+        try {
+            BusinessHours businessHours = BusinessHours.compile(businessHoursProperties, now);
+            shopService.setBusinessHours(businessHours);
+
+            Integer status = businessHours.isOpen(now) ? ShopConstant.OPEN : ShopConstant.CLOSED;
+            if (!status.equals(shopService.getStatus())) {
+                log.info("按营业时间自动设置店铺营业状态为：{}", status == 1 ? "营业中" : "打烊中");
+                shopService.setStatus(status);
+            }
+
+            long transition = businessHours.nextTransition(now);
+            at = transition < 0 ? now + MAX_DELAY_MILLIS : Math.min(transition, now + MAX_DELAY_MILLIS);
+        } catch (RuntimeException e) {
+            log.warn("按营业时间设置营业状态失败，稍后重试：{}", e.getMessage());
+            at = now + RETRY_DELAY_MILLIS;
+        }
+
+        if (next != null) {
+            next.cancel(false);
+        }
+        next = taskScheduler.schedule(this::reschedule, new Date(at));
+        log.info("下一次检查营业状态的时间：{}", Instant.ofEpochMilli(at));
+    }
+}
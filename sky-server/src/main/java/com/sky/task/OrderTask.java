@@ -1,9 +1,11 @@
 package com.sky.task;
 
 import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangedEvent;
 import com.sky.mapper.OrderMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -20,6 +22,8 @@ public class OrderTask {
 
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
 
     /**
      * 处理支付超时订单的方法
@@ -50,6 +54,7 @@ public class OrderTask {
                 orders.setCancelReason("支付超时，自动取消");//取消原因
                 orders.setCancelTime(LocalDateTime.now());//订单取消时间
                 orderMapper.update(orders); //之前实现过了
+                publishStatusChanged(orders);
             }
         }
     }
@@ -74,11 +79,20 @@ public class OrderTask {
         if(ordersList != null && ordersList.size() > 0){
             //遍历订单集合，之后修改每个订单的状态
             for (Orders orders : ordersList) {
-                orders.setStatus(Orders.CANCELLED); //订单状态：5已完成
+                orders.setStatus(Orders.COMPLETED); //订单状态：5已完成
+                orders.setDeliveryTime(LocalDateTime.now());//送达时间
                 orderMapper.update(orders); //之前实现过了
+                publishStatusChanged(orders);
             }
         }
     }
 
-
+    /**
+     * 推送订单状态变化
+     * @param orders
+     */
+    private void publishStatusChanged(Orders orders) {
+        applicationEventPublisher.publishEvent(new OrderStatusChangedEvent(
+                orders.getId(), orders.getUserId(), orders.getNumber(), orders.getStatus()));
+    }
 }
@@ -0,0 +1,44 @@
+package com.sky.websocket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 发送给多个连接的同一条消息
+ *
+ * 文本帧由容器在每个连接上分别编码成UTF-8；接收二进制帧的连接共用这里编码好的字节，
+ * 第一次需要时编码一次，之后每个连接拿到一个只读视图，各自的读取位置互不影响，不复制字节。
+ * 文本帧的接口只接受字符串，无法共用编码结果；旧版管理端页面只处理文本帧，所以二进制帧需要客户端声明才使用，
+ * 两者的群发耗时对比见FanOutBenchmark。
+ */
+public final class EncodedMessage {
+
+    private final String text;
+    //编码后的只读字节，多个线程同时第一次访问时可能重复编码，结果相同，不需要加锁
+    private volatile ByteBuffer bytes;
+
+    private EncodedMessage(String text) {
+        this.text = text;
+    }
+
+    public static EncodedMessage of(String text) {
+        return new EncodedMessage(text);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * 用于发送二进制帧的字节视图，每次调用返回新的视图，发送时修改读取位置不影响其他连接
+     * @return
+     */
+    public ByteBuffer buffer() {
+        ByteBuffer encoded = bytes;
+        if (encoded == null) {
+            encoded = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+            bytes = encoded;
+        }
+        return encoded.duplicate();
+    }
+}
@@ -0,0 +1,43 @@
+package com.sky.websocket;
+
+import com.sky.event.OrderStatusChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把订单状态变化推送给订阅了订单状态的客户端和下单用户的所有连接
+ * 在事务提交之后推送，回滚的状态变化不会推送；没有事务时立即推送
+ */
+@Component
+@Slf4j
+public class OrderStatusPusher {
+
+    //消息类型，3表示订单状态变化（1来单提醒，2用户催单）
+    public static final int TYPE_ORDER_STATUS = 3;
+
+    @Autowired
+    private WebSocketClusterBus clusterBus;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", TYPE_ORDER_STATUS);
+        message.put("orderId", event.getOrderId());
+        message.put("number", event.getNumber());
+        message.put("status", event.getStatus());
+        try {
+            clusterBus.publish(WebSocketTopics.orderStatus(event.getOrderId()), message);
+            if (event.getUserId() != null) {
+                clusterBus.publish(WebSocketTopics.userOrders(event.getUserId()), message);
+            }
+        } catch (RuntimeException e) {
+            //推送失败不影响订单业务，客户端重连后通过补发或重新查询获得最新状态
+            log.warn("推送订单{}状态失败：{}", event.getOrderId(), e.getMessage());
+        }
+    }
+}
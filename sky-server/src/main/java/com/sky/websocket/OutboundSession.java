@@ -0,0 +1,226 @@
+package com.sky.websocket;
+
+import com.sky.enumeration.OverflowPolicy;
+
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 带发送队列的WebSocket连接
+ *
+ * 业务线程只把消息放入有界队列，由异步发送逐条发出：同一个连接同时只有一条消息在发送，
+ * 发送完成的回调里再取下一条。客户端网络慢时消息堆积在队列里，不会阻塞业务线程，
+ * 队列满时按照配置丢弃最早的消息或者断开连接。
+ * 开启了二进制帧的连接发送消息预先编码好的UTF-8字节，多个连接共用，不在每个连接上重复编码。
+ */
+public class OutboundSession {
+
+    private final String id;
+    private final Session session;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final WebSocketSessionRegistry registry;
+
+    //队列本身作为锁，入队和出队都很短
+    private final Deque<Outbound> queue = new ArrayDeque<>();
+    //是否有消息正在发送
+    private final AtomicBoolean sending = new AtomicBoolean();
+    //从false改为true的线程负责报告溢出，保证只报告一次
+    private final AtomicBoolean closed = new AtomicBoolean();
+    //当前连接订阅的主题
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    //已经发送但还没有收到pong的ping数量
+    private final AtomicInteger missedPongs = new AtomicInteger();
+    //客户端是否接收合并后的json数组
+    private volatile boolean batch;
+    //客户端是否接收二进制帧（内容为UTF-8编码的json）
+    private volatile boolean binary;
+
+    OutboundSession(String id, Session session, int capacity, OverflowPolicy overflowPolicy, long sendTimeoutMillis,
+                    WebSocketSessionRegistry registry) {
+        this.id = id;
+        this.session = session;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.registry = registry;
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+    }
+
+    /**
+     * 消息放入发送队列
+     * @param payload
+     * @return 连接已经关闭或者因为队列满被断开时返回false
+     */
+    public boolean enqueue(String payload) {
+        return enqueue(EncodedMessage.of(payload));
+    }
+
+    /**
+     * 消息放入发送队列，发送给多个连接的消息共用同一个对象
+     * @param payload
+     * @return 连接已经关闭或者因为队列满被断开时返回false
+     */
+    public boolean enqueue(EncodedMessage payload) {
+        if (closed.get()) {
+            return false;
+        }
+        boolean dropped = false;
+        boolean overflowed = false;
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    //已经被其他线程关闭（溢出或者连接断开）时不再报告
+                    overflowed = closed.compareAndSet(false, true);
+                } else {
+                    queue.pollFirst();
+                    dropped = true;
+                }
+            }
+            if (!closed.get()) {
+                queue.addLast(new Outbound(payload, System.nanoTime()));
+            }
+        }
+        if (overflowed) {
+            registry.onOverflow(this);
+            return false;
+        }
+        if (closed.get()) {
+            return false;
+        }
+        if (dropped) {
+            registry.onDropped(this);
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * 没有消息在发送时取出队首的消息发送
+     */
+    private void drain() {
+        while (!closed.get() && sending.compareAndSet(false, true)) {
+            Outbound next;
+            synchronized (queue) {
+                next = queue.pollFirst();
+            }
+            if (next != null) {
+                send(next);
+                return;
+            }
+            sending.set(false);
+            //释放发送标记之前可能有新消息入队，重新检查一次
+            synchronized (queue) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void send(Outbound message) {
+        try {
+            SendHandler handler = result -> {
+                sending.set(false);
+                if (result.isOK()) {
+                    registry.onSent(this, System.nanoTime() - message.enqueuedAt);
+                    drain();
+                } else {
+                    registry.onSendFailed(this, result.getException());
+                }
+            };
+            if (binary) {
+                session.getAsyncRemote().sendBinary(message.payload.buffer(), handler);
+            } else {
+                session.getAsyncRemote().sendText(message.payload.getText(), handler);
+            }
+        } catch (RuntimeException e) {
+            sending.set(false);
+            registry.onSendFailed(this, e);
+        }
+    }
+
+    /**
+     * 标记为关闭并清空队列，之后入队的消息直接丢弃
+     */
+    void markClosed() {
+        closed.set(true);
+        synchronized (queue) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * 队列中等待发送的消息数量
+     * @return
+     */
+    public int getQueued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * 队列中最早的消息已经等待的毫秒数，即这个连接落后的时间
+     * @return
+     */
+    public long getLagMillis() {
+        Outbound oldest;
+        synchronized (queue) {
+            oldest = queue.peekFirst();
+        }
+        return oldest == null ? 0 : (System.nanoTime() - oldest.enqueuedAt) / 1_000_000;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Set<String> getTopics() {
+        return topics;
+    }
+
+    AtomicInteger getMissedPongs() {
+        return missedPongs;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    private static class Outbound {
+
+        private final EncodedMessage payload;
+        private final long enqueuedAt;
+
+        private Outbound(EncodedMessage payload, long enqueuedAt) {
+            this.payload = payload;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
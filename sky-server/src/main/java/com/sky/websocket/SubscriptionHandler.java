@@ -0,0 +1,161 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 处理客户端发送的订阅消息，管理端和用户端的WebSocket端点共用
+ *
+ * 订阅：{"action":"subscribe","topics":[...],"lastSeq":{"topic":123},"batch":true,"binary":true}
+ * 取消订阅：{"action":"unsubscribe","topics":[...]}
+ * 每个主题订阅的同时补发lastSeq之后的消息，补发的消息一定在这个主题之后的新消息前面，
+ * 无法补全时发送 {"action":"resync","topic":...,"seq":...}，客户端需要重新查询数据。
+ * 全部处理完后回复 {"action":"subscribed","topics":[成功订阅的主题]}。
+ */
+@Component
+public class SubscriptionHandler {
+
+    @Autowired
+    private WebSocketSessionRegistry registry;
+    @Autowired
+    private TopicReplayBuffer replayBuffer;
+
+    /**
+     * 处理客户端消息
+     * @param outbound
+     * @param message
+     * @param allowed 当前连接是否可以订阅指定的主题，由端点根据登录身份判断，不能直接放行所有主题
+     */
+    public void onMessage(OutboundSession outbound, String message, Predicate<String> allowed) {
+        JSONObject request;
+        try {
+            request = JSON.parseObject(message);
+        } catch (JSONException e) {
+            return;
+        }
+        if (request == null) {
+            return;
+        }
+        String action = request.getString("action");
+        JSONArray topics = request.getJSONArray("topics");
+        if (topics == null) {
+            return;
+        }
+        if ("subscribe".equals(action)) {
+            Object batch = request.get("batch");
+            if (batch instanceof Boolean) {
+                outbound.setBatch((Boolean) batch);
+            }
+            Object binary = request.get("binary");
+            if (binary instanceof Boolean) {
+                outbound.setBinary((Boolean) binary);
+            }
+            JSONObject lastSeq = request.getJSONObject("lastSeq");
+            List<String> accepted = new ArrayList<>();
+            for (int i = 0; i < topics.size(); i++) {
+                String topic = topics.getString(i);
+                if (WebSocketTopics.isKnown(topic) && allowed.test(topic)
+                        && subscribe(outbound, topic, lastSeq(lastSeq, topic))) {
+                    accepted.add(topic);
+                }
+            }
+            JSONObject ack = new JSONObject();
+            ack.put("action", "subscribed");
+            ack.put("topics", accepted);
+            outbound.enqueue(ack.toJSONString());
+        } else if ("unsubscribe".equals(action)) {
+            for (int i = 0; i < topics.size(); i++) {
+                registry.unsubscribe(outbound, topics.getString(i));
+            }
+        }
+    }
+
+    /**
+     * 服务端为连接订阅主题并补发客户端错过的消息
+     * @param outbound
+     * @param topic
+     * @param lastSeq 客户端最后收到的序号，为空表示不需要补发
+     * @return 主题不合法或者订阅数量超过上限时返回false
+     */
+    public boolean subscribe(OutboundSession outbound, String topic, Long lastSeq) {
+        return registry.subscribe(outbound, topic, () -> replay(outbound, topic, lastSeq));
+    }
+
+    private void replay(OutboundSession outbound, String topic, Long lastSeq) {
+        if (lastSeq == null) {
+            return;
+        }
+        List<String> missed = replayBuffer.since(topic, lastSeq);
+        if (missed == null) {
+            JSONObject resync = new JSONObject();
+            resync.put("action", "resync");
+            resync.put("topic", topic);
+            resync.put("seq", replayBuffer.currentSeq());
+            outbound.enqueue(resync.toJSONString());
+            return;
+        }
+        for (String message : missed) {
+            outbound.enqueue(message);
+        }
+    }
+
+    private Long lastSeq(JSONObject lastSeq, String topic) {
+        if (lastSeq == null) {
+            return null;
+        }
+        try {
+            return lastSeq.getLong(topic);
+        } catch (JSONException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 连接地址中的lastSeq参数，用于连接时自动订阅的主题
+     * @param session
+     * @return
+     */
+    public static Long lastSeqParam(Session session) {
+        String value = param(session, "lastSeq");
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 连接地址中的batch参数，是否接收合并后的json数组
+     * @param session
+     * @return
+     */
+    public static boolean batchParam(Session session) {
+        return "true".equals(param(session, "batch"));
+    }
+
+    /**
+     * 连接地址中的binary参数，是否接收二进制帧
+     * @param session
+     * @return
+     */
+    public static boolean binaryParam(Session session) {
+        return "true".equals(param(session, "binary"));
+    }
+
+    public static String param(Session session, String name) {
+        List<String> values = session.getRequestParameterMap().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,164 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按主题合并发送消息
+ *
+ * 主题空闲时消息立即发送，同时打开一个时间窗口；窗口内到达的消息先缓存起来，
+ * 窗口结束或者缓存的消息达到上限时一起发送，开启了合并的连接收到一个json数组，其他连接仍然逐条收到。
+ * 窗口结束时还有消息说明仍然繁忙，继续下一个窗口，直到某个窗口内没有消息才回到空闲状态。
+ * 发送只是放入连接的队列，在主题的锁内完成，保证同一主题的消息顺序不变。
+ */
+@Component
+@Slf4j
+public class TopicCoalescer {
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private WebSocketSessionRegistry registry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, TopicWindow> windows = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    public void init() {
+        batchSize = DistributionSummary.builder("sky.websocket.batch.size")
+                .description("每次发送的同一主题的消息数量")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        if (webSocketProperties.getCoalesceWindowMillis() > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ws-coalesce");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 发送给主题的订阅者
+     * @param topic
+     * @param message 已经序列化的消息
+     */
+    public void publish(String topic, String message) {
+        if (scheduler == null) {
+            deliver(topic, Collections.singletonList(message));
+            return;
+        }
+        while (true) {
+            TopicWindow window = windows.computeIfAbsent(topic, TopicWindow::new);
+            synchronized (window) {
+                if (window.retired) {
+                    //窗口刚刚关闭并从map中移除，重新获取
+                    continue;
+                }
+                if (!window.open) {
+                    //空闲，立即发送并打开窗口
+                    window.open = true;
+                    deliver(topic, Collections.singletonList(message));
+                    schedule(window);
+                    return;
+                }
+                window.pending.add(message);
+                if (window.pending.size() >= webSocketProperties.getCoalesceMaxMessages()) {
+                    flush(window);
+                }
+                return;
+            }
+        }
+    }
+
+    private void schedule(TopicWindow window) {
+        scheduler.schedule(() -> onWindowEnd(window), webSocketProperties.getCoalesceWindowMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void onWindowEnd(TopicWindow window) {
+        try {
+            synchronized (window) {
+                if (window.pending.isEmpty()) {
+                    window.open = false;
+                    window.retired = true;
+                    windows.remove(window.topic, window);
+                    return;
+                }
+                flush(window);
+                schedule(window);
+            }
+        } catch (RuntimeException e) {
+            log.warn("合并发送主题{}的消息失败：{}", window.topic, e.getMessage());
+        }
+    }
+
+    /**
+     * 发送窗口内缓存的消息，调用时持有窗口的锁
+     */
+    private void flush(TopicWindow window) {
+        List<String> messages = window.pending;
+        window.pending = new ArrayList<>();
+        deliver(window.topic, messages);
+    }
+
+    private void deliver(String topic, List<String> messages) {
+        batchSize.record(messages.size());
+        //每条消息只创建一个对象，所有订阅者共用
+        List<EncodedMessage> encoded = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            encoded.add(EncodedMessage.of(message));
+        }
+        EncodedMessage batchFrame = null;
+        if (messages.size() > 1) {
+            //消息已经是json，直接拼接成数组，只拼接一次
+            StringBuilder builder = new StringBuilder();
+            builder.append('[');
+            for (int i = 0; i < messages.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(messages.get(i));
+            }
+            builder.append(']');
+            batchFrame = EncodedMessage.of(builder.toString());
+        }
+        registry.publishBatch(topic, encoded, batchFrame);
+    }
+
+    private static class TopicWindow {
+
+        private final String topic;
+        private List<String> pending = new ArrayList<>();
+        private boolean open;
+        private boolean retired;
+
+        private TopicWindow(String topic) {
+            this.topic = topic;
+        }
+    }
+}
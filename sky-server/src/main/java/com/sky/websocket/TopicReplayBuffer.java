@@ -0,0 +1,169 @@
+package com.sky.websocket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个主题最近消息的环形缓冲区，客户端重连后根据最后收到的序号补发断线期间的消息
+ *
+ * 序号对所有主题全局递增：单节点模式在本地生成，以启动时间为起点，重启后不会变小；
+ * 集群模式由redis在转发消息时生成，所有节点按同样的顺序收到同样的序号，见{@link WebSocketClusterBus}。
+ * 同一主题的消息按序号递增的顺序保存，序号不大于已保存的最大序号的消息直接忽略。
+ * 每个缓冲区记录一个下限，下限之前的消息可能没有保存（缓冲区创建之前的消息或已经被覆盖的消息），
+ * 客户端最后收到的序号小于下限时无法补全，返回需要重新同步。
+ * 补发和新消息可能重复，客户端按序号忽略不大于已收到序号的消息。
+ */
+@Component
+@Slf4j
+public class TopicReplayBuffer {
+
+    static final String SEQ_KEY = "ws:seq";
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final AtomicLong localSeq = new AtomicLong(System.currentTimeMillis() * 1000);
+    //本节点见过的最大序号
+    private final AtomicLong highestSeen = new AtomicLong();
+    //启动之前和被淘汰的主题的消息都无法补发，记录其中的最大序号
+    private final AtomicLong unknownBelow = new AtomicLong();
+
+    private Cache<String, Ring> rings;
+
+    @PostConstruct
+    public void init() {
+        long start = localSeq.get();
+        if (webSocketProperties.isClusterEnabled()) {
+            try {
+                String current = stringRedisTemplate.opsForValue().get(SEQ_KEY);
+                start = current == null ? 0 : Long.parseLong(current);
+            } catch (RuntimeException e) {
+                //redis不可用时从0开始，客户端带着更早的序号重连时会被要求重新同步
+                log.warn("读取WebSocket消息序号失败：{}", e.getMessage());
+                start = 0;
+            }
+        }
+        highestSeen.set(start);
+        unknownBelow.set(start);
+        rings = Caffeine.newBuilder()
+                .maximumSize(webSocketProperties.getReplayMaxTopics())
+                .expireAfterAccess(webSocketProperties.getReplayIdleMinutes(), TimeUnit.MINUTES)
+                .executor(Runnable::run)
+                .<String, Ring>removalListener((topic, ring, cause) -> {
+                    if (ring != null) {
+                        unknownBelow.accumulateAndGet(ring.newest(), Math::max);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 单节点模式生成下一条消息的序号，集群模式的序号由redis生成
+     * @return
+     */
+    public long nextSeq() {
+        return localSeq.incrementAndGet();
+    }
+
+    /**
+     * 保存消息
+     * @param topic
+     * @param seq
+     * @param message 已经序列化、包含序号的消息
+     */
+    public void append(String topic, long seq, String message) {
+        Ring ring = rings.get(topic, t -> new Ring(webSocketProperties.getReplayCapacity(), highestSeen.get()));
+        ring.add(seq, message);
+        highestSeen.accumulateAndGet(seq, Math::max);
+    }
+
+    /**
+     * 查询序号之后的消息
+     * @param topic
+     * @param lastSeq 客户端最后收到的序号
+     * @return 无法补全时返回null，需要客户端重新同步
+     */
+    public List<String> since(String topic, long lastSeq) {
+        if (lastSeq > highestSeen.get()) {
+            //序号比服务端见过的还大，说明序号被重置过（例如redis数据被清空）
+            return null;
+        }
+        Ring ring = rings.getIfPresent(topic);
+        if (ring == null) {
+            return lastSeq >= unknownBelow.get() ? Collections.<String>emptyList() : null;
+        }
+        return ring.since(lastSeq);
+    }
+
+    /**
+     * 当前最大的序号，发送重新同步标记时告诉客户端从哪里开始
+     * @return
+     */
+    public long currentSeq() {
+        return highestSeen.get();
+    }
+
+    private static class Ring {
+
+        private final long[] seqs;
+        private final String[] messages;
+        private int next;
+        private int size;
+        //不大于下限的消息可能没有保存
+        private long floor;
+
+        private Ring(int capacity, long floor) {
+            this.seqs = new long[capacity];
+            this.messages = new String[capacity];
+            this.floor = floor;
+        }
+
+        private synchronized void add(long seq, String message) {
+            if (seq <= newest()) {
+                //已经保存过或者比已保存的消息更早，保存后补发顺序会错乱
+                return;
+            }
+            if (size == seqs.length) {
+                floor = Math.max(floor, seqs[next]);
+            } else {
+                size++;
+            }
+            seqs[next] = seq;
+            messages[next] = message;
+            next = (next + 1) % seqs.length;
+        }
+
+        private synchronized List<String> since(long lastSeq) {
+            if (lastSeq < floor) {
+                return null;
+            }
+            List<String> result = new ArrayList<>();
+            int start = (next - size + seqs.length) % seqs.length;
+            for (int i = 0; i < size; i++) {
+                int index = (start + i) % seqs.length;
+                if (seqs[index] > lastSeq) {
+                    result.add(messages[index]);
+                }
+            }
+            return result;
+        }
+
+        private synchronized long newest() {
+            return size == 0 ? floor : seqs[(next - 1 + seqs.length) % seqs.length];
+        }
+    }
+}
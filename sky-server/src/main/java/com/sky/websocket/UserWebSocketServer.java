@@ -0,0 +1,177 @@
+package com.sky.websocket;
+
+import com.sky.cache.JwtClaimsCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.CloseReason;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.PongMessage;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 用户端WebSocket服务，推送订单状态变化，替代小程序轮询订单状态
+ *
+ * 握手时使用用户端的jwt令牌认证，令牌放在请求头中（名称与http接口相同），
+ * 不能设置请求头的客户端可以使用 /ws/user/orders?token=xxx 。认证失败的连接建立后立即关闭。
+ * 连接后自动订阅当前用户所有订单的状态变化，也可以通过订阅消息订阅自己的单个订单 order:{id}:status 。
+ */
+@Component
+@ServerEndpoint(value = "/ws/user/orders", configurator = UserWebSocketServer.AuthConfigurator.class)
+@Slf4j
+public class UserWebSocketServer {
+
+    private static final String USER_ID = "userId";
+    private static final String SESSION_ID = "sessionId";
+
+    private static WebSocketSessionRegistry registry;
+    private static SubscriptionHandler subscriptionHandler;
+    private static WebSocketHeartbeat heartbeat;
+    private static JwtClaimsCache jwtClaimsCache;
+    private static JwtProperties jwtProperties;
+    private static OrderMapper orderMapper;
+
+    @Autowired
+    public void setRegistry(WebSocketSessionRegistry registry) {
+        UserWebSocketServer.registry = registry;
+    }
+
+    @Autowired
+    public void setSubscriptionHandler(SubscriptionHandler subscriptionHandler) {
+        UserWebSocketServer.subscriptionHandler = subscriptionHandler;
+    }
+
+    @Autowired
+    public void setHeartbeat(WebSocketHeartbeat heartbeat) {
+        UserWebSocketServer.heartbeat = heartbeat;
+    }
+
+    @Autowired
+    public void setJwtClaimsCache(JwtClaimsCache jwtClaimsCache) {
+        UserWebSocketServer.jwtClaimsCache = jwtClaimsCache;
+    }
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        UserWebSocketServer.jwtProperties = jwtProperties;
+    }
+
+    @Autowired
+    public void setOrderMapper(OrderMapper orderMapper) {
+        UserWebSocketServer.orderMapper = orderMapper;
+    }
+
+    /**
+     * 连接建立成功调用的方法
+     */
+    @OnOpen
+    public void onOpen(Session session) throws IOException {
+        Long userId = (Long) session.getUserProperties().get(USER_ID);
+        if (userId == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+            return;
+        }
+        //同一个用户可以在多个设备上同时连接
+        String id = "user:" + userId + ":" + session.getId();
+        session.getUserProperties().put(SESSION_ID, id);
+        log.debug("用户{}建立连接", userId);
+        OutboundSession outbound = registry.register(id, session);
+        heartbeat.start(outbound);
+        outbound.setBatch(SubscriptionHandler.batchParam(session));
+        outbound.setBinary(SubscriptionHandler.binaryParam(session));
+        subscriptionHandler.subscribe(outbound, WebSocketTopics.userOrders(userId), SubscriptionHandler.lastSeqParam(session));
+    }
+
+    /**
+     * 收到客户端的订阅消息，只能订阅自己的订单
+     *
+     * @param message
+     * @param session
+     */
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        OutboundSession outbound = outbound(session);
+        if (outbound == null) {
+            return;
+        }
+        Long userId = (Long) session.getUserProperties().get(USER_ID);
+        subscriptionHandler.onMessage(outbound, message, topic -> {
+            Long orderId = WebSocketTopics.orderIdOf(topic);
+            if (orderId == null) {
+                return false;
+            }
+            Orders orders = orderMapper.getById(orderId);
+            return orders != null && userId.equals(orders.getUserId());
+        });
+    }
+
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        OutboundSession outbound = outbound(session);
+        if (outbound != null) {
+            heartbeat.onPong(outbound, pong.getApplicationData());
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        String id = (String) session.getUserProperties().get(SESSION_ID);
+        if (id != null) {
+            registry.unregister(id, session);
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        log.debug("用户连接发生错误：{}", error.getMessage());
+        onClose(session);
+    }
+
+    private OutboundSession outbound(Session session) {
+        String id = (String) session.getUserProperties().get(SESSION_ID);
+        if (id == null) {
+            return null;
+        }
+        OutboundSession outbound = registry.getSession(id);
+        return outbound != null && outbound.getSession() == session ? outbound : null;
+    }
+
+    /**
+     * 握手时校验用户端令牌，通过后把用户id保存到连接的属性中
+     */
+    public static class AuthConfigurator extends ServerEndpointConfig.Configurator {
+
+        @Override
+        public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+            String token = first(request.getHeaders().get(jwtProperties.getUserTokenName()));
+            if (token == null) {
+                token = first(request.getParameterMap().get("token"));
+            }
+            try {
+                Long userId = jwtClaimsCache.verify(jwtProperties.getUserSecretKey(), JwtClaimsConstant.USER_ID, token);
+                sec.getUserProperties().put(USER_ID, userId);
+            } catch (Exception ex) {
+                //不通过，连接建立后关闭
+                sec.getUserProperties().remove(USER_ID);
+            }
+        }
+
+        private static String first(List<String> values) {
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket消息的集群总线
+ *
+ * 单节点模式（默认）下在本地生成序号，保存到补发缓冲区后直接发送给本节点的连接，
+ * 生成序号到交给合并发送在同一主题的锁内完成，订阅者收到的序号是递增的。
+ * 集群模式下业务线程只把消息放入待发送队列，每个间隔由后台线程合并成一条redis消息，
+ * 通过lua脚本在同一个原子操作里生成一段连续的序号并发布。包括发布节点在内，所有节点都在收到redis消息后
+ * 保存和发送，redis按序号顺序转发，监听容器按收到的顺序逐条处理，每个节点看到的序号都是递增的。
+ * redis不可用时消息只发送给本节点的连接，不带序号，不参与补发。
+ */
+@Component
+@Slf4j
+public class WebSocketClusterBus implements MessageListener {
+
+    public static final String CHANNEL = "ws:bus";
+
+    //群发消息使用的主题标记
+    private static final String BROADCAST = "*";
+
+    //为一批消息生成连续的序号并发布，返回最后一个序号，发布的内容为"最后一个序号|消息"
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "local last = redis.call('INCRBY', KEYS[1], ARGV[2]) "
+                    + "redis.call('PUBLISH', ARGV[1], string.format('%d', last) .. '|' .. ARGV[3]) "
+                    + "return last", Long.class);
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private WebSocketSessionRegistry registry;
+    @Autowired
+    private TopicReplayBuffer replayBuffer;
+    @Autowired
+    private TopicCoalescer coalescer;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+    //待发布到redis的消息：主题、消息
+    private final Queue<String[]> pending = new ConcurrentLinkedQueue<>();
+    //单节点模式按主题分段的锁，保证序号的顺序和发送的顺序一致
+    private final Object[] topicLocks = new Object[64];
+    private ScheduledExecutorService flusher;
+
+    {
+        for (int i = 0; i < topicLocks.length; i++) {
+            topicLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!webSocketProperties.isClusterEnabled()) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-cluster-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = webSocketProperties.getClusterFlushIntervalMillis();
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("WebSocket集群模式已开启，节点id：{}", nodeId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    /**
+     * 发送给主题的订阅者
+     * 消息中加入主题和序号后序列化一次，保存到补发缓冲区，再发送给订阅者
+     * @param topic
+     * @param message json字符串、Map或者对象，转换为json对象后加入topic和seq字段
+     */
+    public void publish(String topic, Object message) {
+        JSONObject json = message instanceof String ? JSON.parseObject((String) message) : (JSONObject) JSON.toJSON(message);
+        json.put("topic", topic);
+        if (flusher != null) {
+            //序号在发布到redis时生成
+            pending.offer(new String[]{topic, json.toJSONString()});
+            return;
+        }
+        synchronized (topicLocks[(topic.hashCode() & Integer.MAX_VALUE) % topicLocks.length]) {
+            long seq = replayBuffer.nextSeq();
+            json.put("seq", seq);
+            String text = json.toJSONString();
+            replayBuffer.append(topic, seq, text);
+            coalescer.publish(topic, text);
+        }
+    }
+
+    /**
+     * 群发给所有连接
+     * @param message
+     */
+    public void broadcast(String message) {
+        registry.broadcast(message);
+        if (flusher != null) {
+            pending.offer(new String[]{BROADCAST, message});
+        }
+    }
+
+    /**
+     * 把待发送的消息合并后发布到redis
+     */
+    private void flush() {
+        while (!pending.isEmpty()) {
+            List<String[]> batch = new ArrayList<>();
+            JSONArray messages = new JSONArray();
+            String[] next;
+            while (messages.size() < webSocketProperties.getClusterMaxBatchSize() && (next = pending.poll()) != null) {
+                JSONObject item = new JSONObject();
+                item.put("t", next[0]);
+                item.put("m", next[1]);
+                messages.add(item);
+                batch.add(next);
+            }
+            JSONObject envelope = new JSONObject();
+            envelope.put("origin", nodeId);
+            envelope.put("messages", messages);
+            try {
+                stringRedisTemplate.execute(PUBLISH_SCRIPT, Collections.singletonList(TopicReplayBuffer.SEQ_KEY),
+                        CHANNEL, String.valueOf(messages.size()), envelope.toJSONString());
+            } catch (RuntimeException e) {
+                //redis不可用时只发送给本节点的连接，群发消息已经发送过
+                log.warn("WebSocket消息发布到redis失败：{}", e.getMessage());
+                for (String[] item : batch) {
+                    if (!BROADCAST.equals(item[0])) {
+                        coalescer.publish(item[0], item[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 收到redis转发的消息（包括本节点发布的），按顺序分配序号后发送给本节点的连接
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf('|');
+        long last;
+        JSONObject envelope;
+        try {
+            last = Long.parseLong(body.substring(0, index));
+            envelope = JSON.parseObject(body.substring(index + 1));
+        } catch (RuntimeException e) {
+            log.warn("无法识别的WebSocket集群消息：{}", e.getMessage());
+            return;
+        }
+        boolean local = nodeId.equals(envelope.getString("origin"));
+        JSONArray messages = envelope.getJSONArray("messages");
+        long seq = last - messages.size() + 1;
+        for (int i = 0; i < messages.size(); i++, seq++) {
+            JSONObject item = messages.getJSONObject(i);
+            String topic = item.getString("t");
+            String text = item.getString("m");
+            if (BROADCAST.equals(topic)) {
+                if (!local) {
+                    registry.broadcast(text);
+                }
+                continue;
+            }
+            //消息是json对象，在末尾加入序号，不需要重新解析
+            text = text.substring(0, text.length() - 1) + ",\"seq\":" + seq + "}";
+            replayBuffer.append(topic, seq, text);
+            coalescer.publish(topic, text);
+        }
+    }
+}
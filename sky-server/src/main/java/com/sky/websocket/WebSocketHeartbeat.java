@@ -0,0 +1,124 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket心跳
+ *
+ * 每个连接在时间轮上有一个定时任务，按心跳间隔发送协议层的ping，ping的内容是发送时间，
+ * 收到pong时计算往返时间并清零未响应次数，连续多次没有收到pong的连接被断开。
+ * 首次发送的时间在一个间隔内随机分布，避免大量连接同时发送。
+ * 发送ping需要等待正在发送的消息，可能阻塞，所以放到单独的线程池中执行，不占用时间轮的线程。
+ * 下一次心跳在提交ping之前安排好，线程池拒绝任务时这一次按没有收到pong处理，心跳不会停止。
+ * 关闭任务被拒绝的连接已经不再接收消息，心跳继续为它重新提交关闭，直到底层连接关闭。
+ */
+@Component
+@Slf4j
+public class WebSocketHeartbeat {
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private WebSocketSessionRegistry registry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    @Qualifier("heartbeatExecutor")
+    private Executor pingExecutor;
+
+    private HashedWheelTimer timer;
+    private Timer rtt;
+
+    @PostConstruct
+    public void init() {
+        timer = new HashedWheelTimer(runnable -> {
+            Thread thread = new Thread(runnable, "ws-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        }, 100, TimeUnit.MILLISECONDS, 512);
+        rtt = Timer.builder("sky.websocket.ping.rtt")
+                .description("ping到pong的往返时间")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.stop();
+    }
+
+    /**
+     * 连接建立后开始心跳
+     * @param outbound
+     */
+    public void start(OutboundSession outbound) {
+        long interval = TimeUnit.SECONDS.toMillis(webSocketProperties.getHeartbeatIntervalSeconds());
+        long delay = ThreadLocalRandom.current().nextLong(interval) + 1;
+        timer.newTimeout(timeout -> beat(outbound), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 收到pong
+     * @param outbound
+     * @param data ping中携带的发送时间
+     */
+    public void onPong(OutboundSession outbound, ByteBuffer data) {
+        outbound.getMissedPongs().set(0);
+        if (data != null && data.remaining() == Long.BYTES) {
+            long sentAt = data.getLong(data.position());
+            rtt.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void beat(OutboundSession outbound) {
+        if (!outbound.getSession().isOpen()) {
+            return;
+        }
+        if (outbound.isClosed()) {
+            //关闭任务被拒绝过的连接，重新提交关闭，仍然被拒绝时下一次心跳再试
+            if (!registry.retryClose(outbound)) {
+                timer.newTimeout(timeout -> beat(outbound), webSocketProperties.getHeartbeatIntervalSeconds(), TimeUnit.SECONDS);
+            }
+            return;
+        }
+        if (outbound.getMissedPongs().get() >= webSocketProperties.getMaxMissedPongs()) {
+            registry.onHeartbeatTimeout(outbound);
+            return;
+        }
+        outbound.getMissedPongs().incrementAndGet();
+        timer.newTimeout(timeout -> beat(outbound), webSocketProperties.getHeartbeatIntervalSeconds(), TimeUnit.SECONDS);
+        try {
+            pingExecutor.execute(() -> ping(outbound));
+        } catch (RejectedExecutionException e) {
+            log.debug("WebSocket连接{}的ping任务被拒绝", outbound.getId());
+        }
+    }
+
+    private void ping(OutboundSession outbound) {
+        ByteBuffer data = ByteBuffer.allocate(Long.BYTES);
+        data.putLong(System.nanoTime());
+        data.flip();
+        try {
+            outbound.getSession().getAsyncRemote().sendPing(data);
+        } catch (IOException | IllegalStateException e) {
+            //发送失败按没有收到pong处理，达到次数后断开
+            log.debug("WebSocket连接{}发送ping失败：{}", outbound.getId(), e.getMessage());
+        }
+    }
+}
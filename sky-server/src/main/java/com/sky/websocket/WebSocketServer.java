@@ -1,33 +1,104 @@
 package com.sky.websocket;
 
+import com.sky.cache.JwtClaimsCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+
+import javax.websocket.CloseReason;
+import javax.websocket.HandshakeResponse;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
+import javax.websocket.PongMessage;
 import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import javax.websocket.server.ServerEndpointConfig;
+import java.io.IOException;
+import java.util.List;
 
 /**
- * WebSocket服务
+ * 管理端WebSocket服务
+ *
+ * 每个连接由容器创建一个端点对象，不经过spring注入，
+ * 所以连接注册表等组件保存在静态字段中，由spring创建的那个实例通过setter注入。
+ *
+ * 握手时使用管理端的jwt令牌认证，令牌放在请求头中（名称与http接口相同），
+ * 浏览器不能设置请求头，可以使用 /ws/{sid}?token=xxx 。认证失败的连接建立后立即关闭。
+ * 客户端订阅主题的消息格式见SubscriptionHandler，只能订阅店铺和工作台主题，订单和用户的主题只能在用户端订阅。
+ * 连接建立后自动订阅默认店铺的订单提醒，兼容不发送订阅消息的旧版页面，
+ * 自动订阅的主题通过连接地址的参数 /ws/{sid}?lastSeq=123 补发断线期间的消息。
+ * 推送的消息带有topic和seq字段；连接地址带有batch=true参数的客户端，
+ * 繁忙时会收到同一主题多条消息合并成的json数组，其他客户端仍然逐条收到。
+ * 连接地址带有binary=true参数的客户端收到二进制帧，内容是UTF-8编码的json，
+ * 同一条消息只编码一次，所有这样的连接共用编码后的字节。
  */
 @Component
-@ServerEndpoint("/ws/{sid}")
+@ServerEndpoint(value = "/ws/{sid}", configurator = WebSocketServer.AuthConfigurator.class)
+@Slf4j
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final String EMP_ID = "empId";
+
+    private static WebSocketSessionRegistry registry;
+    private static SubscriptionHandler subscriptionHandler;
+    private static WebSocketHeartbeat heartbeat;
+    private static WebSocketClusterBus clusterBus;
+    private static JwtClaimsCache jwtClaimsCache;
+    private static JwtProperties jwtProperties;
+
+    @Autowired
+    public void setRegistry(WebSocketSessionRegistry registry) {
+        WebSocketServer.registry = registry;
+    }
+
+    @Autowired
+    public void setSubscriptionHandler(SubscriptionHandler subscriptionHandler) {
+        WebSocketServer.subscriptionHandler = subscriptionHandler;
+    }
+
+    @Autowired
+    public void setHeartbeat(WebSocketHeartbeat heartbeat) {
+        WebSocketServer.heartbeat = heartbeat;
+    }
+
+    @Autowired
+    public void setClusterBus(WebSocketClusterBus clusterBus) {
+        WebSocketServer.clusterBus = clusterBus;
+    }
+
+    @Autowired
+    public void setJwtClaimsCache(JwtClaimsCache jwtClaimsCache) {
+        WebSocketServer.jwtClaimsCache = jwtClaimsCache;
+    }
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        WebSocketServer.jwtProperties = jwtProperties;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
-    public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+    public void onOpen(Session session, @PathParam("sid") String sid) throws IOException {
+        Long empId = (Long) session.getUserProperties().get(EMP_ID);
+        if (empId == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+            return;
+        }
+        log.info("员工{}的客户端：{}建立连接", empId, sid);
+        OutboundSession outbound = registry.register(id(sid), session);
+        heartbeat.start(outbound);
+        outbound.setBatch(SubscriptionHandler.batchParam(session));
+        outbound.setBinary(SubscriptionHandler.binaryParam(session));
+        subscriptionHandler.subscribe(outbound, WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID),
+                SubscriptionHandler.lastSeqParam(session));
     }
 
     /**
@@ -36,8 +107,26 @@ public class WebSocketServer {
      * @param message 客户端发送过来的消息
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+    public void onMessage(String message, Session session, @PathParam("sid") String sid) {
+        log.debug("收到来自客户端：{}的信息：{}", sid, message);
+        OutboundSession outbound = registry.getSession(id(sid));
+        if (outbound == null || outbound.getSession() != session) {
+            return;
+        }
+        subscriptionHandler.onMessage(outbound, message, WebSocketTopics::isAdminTopic);
+    }
+
+    /**
+     * 收到心跳ping的响应
+     *
+     * @param pong
+     */
+    @OnMessage
+    public void onPong(PongMessage pong, Session session, @PathParam("sid") String sid) {
+        OutboundSession outbound = registry.getSession(id(sid));
+        if (outbound != null && outbound.getSession() == session) {
+            heartbeat.onPong(outbound, pong.getApplicationData());
+        }
     }
 
     /**
@@ -46,26 +135,65 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开：{}", sid);
+        registry.unregister(id(sid), session);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error, @PathParam("sid") String sid) {
+        log.warn("连接{}发生错误：{}", sid, error.getMessage());
+        registry.unregister(id(sid), session);
+    }
+
+    //加上前缀，客户端传入的sid不会和用户端的连接id冲突
+    private static String id(String sid) {
+        return "admin:" + sid;
+    }
+
+    /**
+     * 发送给订阅了主题的客户端，集群模式下包括其他节点上的客户端
+     * 消息只序列化一次，所有订阅者共用
+     *
+     * @param topic
+     * @param message json字符串、Map或者对象，发送时加入topic和seq字段
+     */
+    public void publish(String topic, Object message) {
+        clusterBus.publish(topic, message);
     }
 
     /**
      * 群发
+     * 消息放入每个连接的发送队列后立即返回，不等待发送完成
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
+        clusterBus.broadcast(message);
+    }
+
+    /**
+     * 握手时校验管理端令牌，通过后把员工id保存到连接的属性中
+     */
+    public static class AuthConfigurator extends ServerEndpointConfig.Configurator {
+
+        @Override
+        public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+            String token = first(request.getHeaders().get(jwtProperties.getAdminTokenName()));
+            if (token == null) {
+                token = first(request.getParameterMap().get("token"));
+            }
             try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+                Long empId = jwtClaimsCache.verify(jwtProperties.getAdminSecretKey(), JwtClaimsConstant.EMP_ID, token);
+                sec.getUserProperties().put(EMP_ID, empId);
+            } catch (Exception ex) {
+                //不通过，连接建立后关闭
+                sec.getUserProperties().remove(EMP_ID);
             }
         }
-    }
 
+        private static String first(List<String> values) {
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
 }
@@ -0,0 +1,372 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket连接注册表，负责按主题发送、群发和单发消息
+ * 发送只是把消息放入每个连接自己的队列，调用方不会被慢客户端阻塞
+ * 主题到订阅连接的索引只保存有订阅者的主题，最后一个订阅者离开时删除主题
+ */
+@Component
+@Slf4j
+public class WebSocketSessionRegistry {
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    @Qualifier("webSocketCloseExecutor")
+    private Executor closeExecutor;
+
+    private final Map<String, OutboundSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<OutboundSession>> subscribers = new ConcurrentHashMap<>();
+    //按主题分段的锁：发送给订阅者和订阅时补发互斥，补发的消息不会排在更新的消息后面
+    private final Object[] topicLocks = new Object[64];
+
+    {
+        for (int i = 0; i < topicLocks.length; i++) {
+            topicLocks[i] = new Object();
+        }
+    }
+
+    private Timer sendLag;
+    private Counter dropped;
+    private Counter overflowDisconnects;
+    private Counter sendFailures;
+    private Counter heartbeatTimeouts;
+
+    @PostConstruct
+    public void init() {
+        sendLag = Timer.builder("sky.websocket.send.lag")
+                .description("消息从入队到发送完成的时间")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        dropped = Counter.builder("sky.websocket.dropped")
+                .description("发送队列已满被丢弃的消息数量")
+                .register(meterRegistry);
+        overflowDisconnects = Counter.builder("sky.websocket.disconnects")
+                .tag("reason", "overflow")
+                .register(meterRegistry);
+        sendFailures = Counter.builder("sky.websocket.disconnects")
+                .tag("reason", "send_failed")
+                .register(meterRegistry);
+        heartbeatTimeouts = Counter.builder("sky.websocket.disconnects")
+                .tag("reason", "heartbeat")
+                .register(meterRegistry);
+        Gauge.builder("sky.websocket.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("sky.websocket.topics", subscribers, Map::size).register(meterRegistry);
+        Gauge.builder("sky.websocket.queued", this, WebSocketSessionRegistry::totalQueued).register(meterRegistry);
+        Gauge.builder("sky.websocket.max.lag", this, WebSocketSessionRegistry::maxLagMillis)
+                .baseUnit("milliseconds")
+                .description("落后最多的连接中最早的未发送消息已经等待的时间")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册新连接，相同id的旧连接会被关闭
+     * @param id
+     * @param session
+     * @return
+     */
+    public OutboundSession register(String id, Session session) {
+        OutboundSession outbound = new OutboundSession(id, session,
+                webSocketProperties.getSendQueueCapacity(),
+                webSocketProperties.getOverflowPolicy(),
+                webSocketProperties.getSendTimeoutMillis(),
+                this);
+        OutboundSession previous = sessions.put(id, outbound);
+        if (previous != null && previous.getSession() != session) {
+            close(previous, new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced"));
+        }
+        return outbound;
+    }
+
+    /**
+     * 连接关闭时移除，只移除同一个会话，不会误删同一个id重新建立的连接
+     * @param id
+     * @param session
+     */
+    public void unregister(String id, Session session) {
+        OutboundSession outbound = sessions.get(id);
+        if (outbound != null && outbound.getSession() == session && sessions.remove(id, outbound)) {
+            outbound.markClosed();
+            unsubscribeAll(outbound);
+        }
+    }
+
+    /**
+     * 订阅主题
+     * @param outbound
+     * @param topic
+     * @return 主题不合法或者订阅数量超过上限时返回false
+     */
+    public boolean subscribe(OutboundSession outbound, String topic) {
+        if (!WebSocketTopics.isKnown(topic) || outbound.isClosed()) {
+            return false;
+        }
+        if (outbound.getTopics().size() >= webSocketProperties.getMaxTopicsPerSession()
+                && !outbound.getTopics().contains(topic)) {
+            return false;
+        }
+        outbound.getTopics().add(topic);
+        //在compute中添加，避免和删除空主题的操作交错，把连接加到已经被删除的集合里
+        subscribers.compute(topic, (t, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(outbound);
+            return set;
+        });
+        //订阅的同时连接被关闭，已经执行过的清理不会包含这个主题，需要再清理一次
+        if (outbound.isClosed()) {
+            unsubscribeAll(outbound);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 订阅主题，并在发送这个主题的消息之前放入补发的消息
+     * 补发和订阅在同一把锁内完成，之后的新消息一定排在补发的消息后面，客户端按序号去重不会丢掉补发的消息
+     * @param outbound
+     * @param topic
+     * @param replay 把补发的消息放入连接的队列
+     * @return 主题不合法或者订阅数量超过上限时返回false
+     */
+    public boolean subscribe(OutboundSession outbound, String topic, Runnable replay) {
+        synchronized (lockFor(topic)) {
+            if (!subscribe(outbound, topic)) {
+                return false;
+            }
+            replay.run();
+            return true;
+        }
+    }
+
+    private Object lockFor(String topic) {
+        return topicLocks[(topic.hashCode() & Integer.MAX_VALUE) % topicLocks.length];
+    }
+
+    /**
+     * 取消订阅
+     * @param outbound
+     * @param topic
+     */
+    public void unsubscribe(OutboundSession outbound, String topic) {
+        outbound.getTopics().remove(topic);
+        subscribers.computeIfPresent(topic, (t, set) -> {
+            set.remove(outbound);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void unsubscribeAll(OutboundSession outbound) {
+        for (String topic : outbound.getTopics()) {
+            unsubscribe(outbound, topic);
+        }
+    }
+
+    /**
+     * 发送给主题的所有订阅者，消息已经序列化，所有订阅者共用同一个字符串
+     * @param topic
+     * @param message
+     * @return 订阅者数量
+     */
+    public int publish(String topic, String message) {
+        return publish(topic, EncodedMessage.of(message));
+    }
+
+    /**
+     * 发送给主题的所有订阅者，所有订阅者共用同一个消息对象，二进制帧只编码一次
+     * @param topic
+     * @param message
+     * @return 订阅者数量
+     */
+    public int publish(String topic, EncodedMessage message) {
+        Set<OutboundSession> set = subscribers.get(topic);
+        if (set == null) {
+            return 0;
+        }
+        int count = 0;
+        synchronized (lockFor(topic)) {
+            for (OutboundSession outbound : set) {
+                if (outbound.enqueue(message)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 发送一批同一主题的消息，开启了合并的连接收到一个json数组，其他连接逐条收到
+     * @param topic
+     * @param messages 已经序列化的消息
+     * @param batchFrame 合并后的json数组，只有一条消息时为null
+     * @return 订阅者数量
+     */
+    public int publishBatch(String topic, List<EncodedMessage> messages, EncodedMessage batchFrame) {
+        Set<OutboundSession> set = subscribers.get(topic);
+        if (set == null) {
+            return 0;
+        }
+        int count = 0;
+        synchronized (lockFor(topic)) {
+            for (OutboundSession outbound : set) {
+                boolean delivered = true;
+                if (batchFrame != null && outbound.isBatch()) {
+                    delivered = outbound.enqueue(batchFrame);
+                } else {
+                    for (EncodedMessage message : messages) {
+                        delivered = outbound.enqueue(message) && delivered;
+                    }
+                }
+                if (delivered) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public OutboundSession getSession(String id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * 群发
+     * @param message
+     */
+    public void broadcast(String message) {
+        EncodedMessage encoded = EncodedMessage.of(message);
+        for (OutboundSession outbound : sessions.values()) {
+            outbound.enqueue(encoded);
+        }
+    }
+
+    /**
+     * 发送给指定连接
+     * @param id
+     * @param message
+     * @return 连接不存在时返回false
+     */
+    public boolean send(String id, String message) {
+        OutboundSession outbound = sessions.get(id);
+        return outbound != null && outbound.enqueue(message);
+    }
+
+    public Collection<OutboundSession> getSessions() {
+        return sessions.values();
+    }
+
+    void onSent(OutboundSession outbound, long lagNanos) {
+        sendLag.record(lagNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onDropped(OutboundSession outbound) {
+        dropped.increment();
+    }
+
+    void onOverflow(OutboundSession outbound) {
+        overflowDisconnects.increment();
+        log.warn("WebSocket连接{}发送队列已满，断开连接", outbound.getId());
+        close(outbound, new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "send queue overflow"));
+    }
+
+    void onSendFailed(OutboundSession outbound, Throwable ex) {
+        if (outbound.isClosed()) {
+            return;
+        }
+        sendFailures.increment();
+        log.warn("WebSocket连接{}发送消息失败：{}", outbound.getId(), ex == null ? null : ex.getMessage());
+        close(outbound, new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed"));
+    }
+
+    void onHeartbeatTimeout(OutboundSession outbound) {
+        if (outbound.isClosed()) {
+            return;
+        }
+        heartbeatTimeouts.increment();
+        log.info("WebSocket连接{}心跳超时，断开连接", outbound.getId());
+        close(outbound, new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "heartbeat timeout"));
+    }
+
+    /**
+     * 心跳发现已经标记为关闭、但底层连接仍然打开的连接时重新提交关闭
+     * @param outbound
+     * @return 关闭任务是否已经提交
+     */
+    boolean retryClose(OutboundSession outbound) {
+        return submitClose(outbound, new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "closed"));
+    }
+
+    /**
+     * 从注册表移除并关闭连接，关闭需要发送关闭帧，放到其他线程执行
+     * 调用方可能是持有主题锁的发送线程，任何情况下都不在当前线程关闭
+     */
+    private void close(OutboundSession outbound, CloseReason reason) {
+        sessions.remove(outbound.getId(), outbound);
+        outbound.markClosed();
+        unsubscribeAll(outbound);
+        submitClose(outbound, reason);
+    }
+
+    private boolean submitClose(OutboundSession outbound, CloseReason reason) {
+        try {
+            closeExecutor.execute(() -> closeSession(outbound, reason));
+            return true;
+        } catch (RejectedExecutionException e) {
+            //连接已经不再接收消息，底层连接由心跳稍后重新关闭
+            log.warn("关闭WebSocket连接{}的任务被拒绝，稍后由心跳重试", outbound.getId());
+            return false;
+        }
+    }
+
+    private void closeSession(OutboundSession outbound, CloseReason reason) {
+        try {
+            if (outbound.getSession().isOpen()) {
+                outbound.getSession().close(reason);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("关闭WebSocket连接{}失败：{}", outbound.getId(), e.getMessage());
+        }
+    }
+
+    private double totalQueued() {
+        long total = 0;
+        for (OutboundSession outbound : sessions.values()) {
+            total += outbound.getQueued();
+        }
+        return total;
+    }
+
+    private double maxLagMillis() {
+        long max = 0;
+        for (OutboundSession outbound : sessions.values()) {
+            max = Math.max(max, outbound.getLagMillis());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,79 @@
+package com.sky.websocket;
+
+import java.util.regex.Pattern;
+
+/**
+ * WebSocket订阅主题
+ * shop:{id}:orders    店铺的来单、催单提醒
+ * shop:{id}:kitchen   店铺后厨出餐队列的变化
+ * dashboard           工作台数据变化
+ * 以上主题只能由登录的管理端连接订阅
+ * order:{id}:status   订单状态变化，只能由下单的用户订阅，由用户端连接校验订单归属
+ * user:{id}:orders    用户所有订单的状态变化，只能由服务端为登录的用户订阅
+ */
+public class WebSocketTopics {
+
+    //目前只有一个店铺，管理端旧版页面不会发送订阅消息，连接后自动订阅这个店铺的订单提醒
+    public static final Long DEFAULT_SHOP_ID = 1L;
+
+    public static final String DASHBOARD = "dashboard";
+
+    private static final Pattern SHOP_ORDERS = Pattern.compile("shop:\\d{1,19}:orders");
+    private static final Pattern SHOP_KITCHEN = Pattern.compile("shop:\\d{1,19}:kitchen");
+    private static final Pattern ORDER_STATUS = Pattern.compile("order:\\d{1,19}:status");
+    private static final Pattern USER_ORDERS = Pattern.compile("user:\\d{1,19}:orders");
+
+    public static String shopOrders(Long shopId) {
+        return "shop:" + shopId + ":orders";
+    }
+
+    public static String shopKitchen(Long shopId) {
+        return "shop:" + shopId + ":kitchen";
+    }
+
+    public static String orderStatus(Long orderId) {
+        return "order:" + orderId + ":status";
+    }
+
+    public static String userOrders(Long userId) {
+        return "user:" + userId + ":orders";
+    }
+
+    /**
+     * 从订单状态主题中解析订单id
+     * @param topic
+     * @return 不是订单状态主题时返回null
+     */
+    public static Long orderIdOf(String topic) {
+        if (topic == null || !ORDER_STATUS.matcher(topic).matches()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(topic.substring("order:".length(), topic.length() - ":status".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 是否是管理端可以订阅的主题（店铺和工作台）
+     * @param topic
+     * @return
+     */
+    public static boolean isAdminTopic(String topic) {
+        return topic != null
+                && (DASHBOARD.equals(topic) || SHOP_ORDERS.matcher(topic).matches()
+                || SHOP_KITCHEN.matcher(topic).matches());
+    }
+
+    /**
+     * 是否是支持的主题，客户端不能订阅任意字符串，避免主题索引被无限撑大
+     * 是否可以订阅由各端点判断
+     * @param topic
+     * @return
+     */
+    public static boolean isKnown(String topic) {
+        return isAdminTopic(topic) || (topic != null
+                && (ORDER_STATUS.matcher(topic).matches() || USER_ORDERS.matcher(topic).matches()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 缓存值序列化的微基准：对比jdk序列化、Smile、Smile+LZ4的体积和耗时
+ *
+ * 默认不执行，运行方式：
+ * mvn -pl sky-server test -Dtest=CompactRedisSerializerBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CompactRedisSerializerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURE_ITERATIONS = 50_000;
+
+    @Test
+    public void serializers() {
+        for (int size : new int[]{1, 10, 50}) {
+            Result<List<DishVO>> value = Result.success(dishes(size));
+            System.out.printf("== 每个分类%d个菜品 ==%n", size);
+            run("jdk", new CompactRedisSerializer(true, Integer.MAX_VALUE), value);
+            run("smile", new CompactRedisSerializer(false, Integer.MAX_VALUE), value);
+            run("smile+lz4", new CompactRedisSerializer(false, 0), value);
+        }
+    }
+
+    private static void run(String name, CompactRedisSerializer serializer, Object value) {
+        byte[] bytes = serializer.serialize(value);
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += serializer.serialize(value).length;
+            sink += serializer.deserialize(bytes) == null ? 0 : 1;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            sink += serializer.serialize(value).length;
+        }
+        long serializeNanos = (System.nanoTime() - start) / MEASURE_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            sink += serializer.deserialize(bytes) == null ? 0 : 1;
+        }
+        long deserializeNanos = (System.nanoTime() - start) / MEASURE_ITERATIONS;
+
+        System.out.printf("%-10s 大小：%6d字节  序列化：%7dns/次  反序列化：%7dns/次  (%d)%n",
+                name, bytes.length, serializeNanos, deserializeNanos, sink % 10);
+    }
+
+    private static List<DishVO> dishes(int size) {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 1; i <= size; i++) {
+            dishes.add(DishVO.builder()
+                    .id(i).name("宫保鸡丁" + i).categoryId(10L)
+                    .price(new BigDecimal("28.50")).status(1)
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/dish-" + i + ".png")
+                    .description("鸡肉、花生米、干辣椒，经典川菜")
+                    .updateTime(LocalDateTime.of(2024, 1, 1, 12, 0))
+                    .flavors(new ArrayList<>(Collections.singletonList(
+                            DishFlavor.builder().id(i).dishId(i).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build())))
+                    .build());
+        }
+        return dishes;
+    }
+}
@@ -0,0 +1,134 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidTypeIdException;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sky.entity.Category;
+import com.sky.entity.DishFlavor;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactRedisSerializerTest {
+
+    //阈值为0时所有数据都压缩，阈值很大时都不压缩
+    private final CompactRedisSerializer lz4 = new CompactRedisSerializer(false, 0);
+    private final CompactRedisSerializer plain = new CompactRedisSerializer(false, Integer.MAX_VALUE);
+
+    @Test
+    public void resultOfCategories() {
+        Category category = Category.builder()
+                .id(1L).type(1).name("川菜").sort(1).status(1)
+                .createTime(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .build();
+        Result<List<Category>> result = Result.success(new ArrayList<>(Collections.singletonList(category)));
+
+        assertEquals(result, roundTrip(lz4, result));
+        assertEquals(result, roundTrip(plain, result));
+    }
+
+    @Test
+    public void listOfDishVO() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            DishVO dishVO = DishVO.builder()
+                    .id(i).name("宫保鸡丁" + i).categoryId(10L)
+                    .price(new BigDecimal("28.50")).status(1)
+                    .updateTime(LocalDateTime.of(2024, 1, 1, 12, 0))
+                    .flavors(new ArrayList<>(Collections.singletonList(
+                            DishFlavor.builder().id(i).dishId(i).name("辣度").value("[\"微辣\",\"中辣\"]").build())))
+                    .build();
+            dishes.add(dishVO);
+        }
+
+        assertEquals(dishes, roundTrip(lz4, dishes));
+        assertEquals(dishes, roundTrip(plain, dishes));
+    }
+
+    @Test
+    public void emptyList() {
+        assertEquals(Collections.emptyList(), roundTrip(lz4, Collections.emptyList()));
+        assertEquals(Collections.emptyList(), roundTrip(plain, Collections.emptyList()));
+        assertEquals(Result.success(Collections.emptyList()), roundTrip(plain, Result.success(Collections.emptyList())));
+    }
+
+    @Test
+    public void arraysAsList() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        assertEquals(ids, roundTrip(lz4, ids));
+        assertEquals(ids, roundTrip(plain, ids));
+    }
+
+    @Test
+    public void scalarsAndNullValue() {
+        assertEquals(1, roundTrip(plain, 1));
+        assertEquals(1, roundTrip(lz4, 1));
+        assertSame(NullValue.INSTANCE, roundTrip(plain, NullValue.INSTANCE));
+    }
+
+    @Test
+    public void compressionFlag() {
+        byte[] compressed = lz4.serialize(Result.success("菜单"));
+        byte[] uncompressed = plain.serialize(Result.success("菜单"));
+        assertEquals(1, compressed[2] & 0x01);
+        assertEquals(0, uncompressed[2] & 0x01);
+        //两种格式可以互相读取
+        assertEquals(Result.success("菜单"), plain.deserialize(compressed));
+        assertEquals(Result.success("菜单"), lz4.deserialize(uncompressed));
+    }
+
+    @Test
+    public void readsJdkFormat() {
+        CompactRedisSerializer jdk = new CompactRedisSerializer(true, 0);
+        List<Long> ids = new ArrayList<>(Arrays.asList(1L, 2L));
+        byte[] bytes = jdk.serialize(ids);
+        assertArrayEquals(new byte[]{(byte) 0xAC, (byte) 0xED}, Arrays.copyOf(bytes, 2));
+        assertEquals(ids, plain.deserialize(bytes));
+    }
+
+    @Test
+    public void smallerThanJdkWithoutCompression() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            dishes.add(DishVO.builder()
+                    .id(i).name("宫保鸡丁" + i).categoryId(10L)
+                    .price(new BigDecimal("28.50")).status(1)
+                    .updateTime(LocalDateTime.of(2024, 1, 1, 12, 0))
+                    .build());
+        }
+        Result<List<DishVO>> result = Result.success(dishes);
+        CompactRedisSerializer jdk = new CompactRedisSerializer(true, 0);
+
+        assertTrue(plain.serialize(result).length < jdk.serialize(result).length);
+    }
+
+    @Test
+    public void rejectsTypesNotAllowed() throws Exception {
+        //带有不在允许列表中的类型信息的数据，格式与序列化器写入的相同
+        byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(Arrays.asList("java.net.URL", "http://localhost"));
+        byte[] forged = new byte[3 + smile.length];
+        System.arraycopy(plain.serialize(1), 0, forged, 0, 3);
+        System.arraycopy(smile, 0, forged, 3, smile.length);
+        SerializationException e = assertThrows(SerializationException.class, () -> plain.deserialize(forged));
+        assertTrue(e.getCause() instanceof InvalidTypeIdException);
+    }
+
+    private static Object roundTrip(CompactRedisSerializer serializer, Object value) {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+}
@@ -0,0 +1,168 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * WebSocket群发的微基准：同一条消息发送给1到1000个连接，对比文本帧和共用编码字节的二进制帧
+ *
+ * 容器用桩代替：文本帧在每个连接上把字符串编码成UTF-8写入连接自己的输出缓冲区（Tomcat的做法），
+ * 二进制帧把共用的字节复制到输出缓冲区，两者都在发送后立即回调完成。
+ * 默认不执行，运行方式：
+ * mvn -pl sky-server test -Dtest=FanOutBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FanOutBenchmark {
+
+    private static final long WARMUP_SENDS = 2_000_000;
+    private static final long MEASURE_SENDS = 5_000_000;
+
+    @Test
+    public void fanOut() {
+        Map<String, String> messages = new HashMap<>();
+        messages.put("催单", reminder());
+        messages.put("后厨队列", kitchen());
+        for (Map.Entry<String, String> entry : messages.entrySet()) {
+            System.out.printf("== %s消息，%d字节 ==%n", entry.getKey(),
+                    entry.getValue().getBytes(StandardCharsets.UTF_8).length);
+            for (int sessions : new int[]{1, 10, 100, 1000}) {
+                long text = run(sessions, false, entry.getValue());
+                long binary = run(sessions, true, entry.getValue());
+                System.out.printf("%5d个连接  文本帧：%9dns/次  二进制帧：%9dns/次  节省：%3d%%%n",
+                        sessions, text, binary, (text - binary) * 100 / text);
+            }
+        }
+    }
+
+    /**
+     * @return 每次群发的耗时
+     */
+    private static long run(int sessions, boolean binary, String message) {
+        WebSocketProperties properties = new WebSocketProperties();
+        WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+        ReflectionTestUtils.setField(registry, "webSocketProperties", properties);
+        ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "closeExecutor", (Executor) Runnable::run);
+        registry.init();
+        String topic = WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID);
+        List<ContainerStub> stubs = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            ContainerStub stub = new ContainerStub();
+            OutboundSession outbound = registry.register(String.valueOf(i), stub.session());
+            outbound.setBinary(binary);
+            registry.subscribe(outbound, topic);
+            stubs.add(stub);
+        }
+
+        for (long i = 0, n = Math.max(1000, WARMUP_SENDS / sessions); i < n; i++) {
+            registry.publish(topic, message);
+        }
+        long iterations = Math.max(1000, MEASURE_SENDS / sessions);
+        long start = System.nanoTime();
+        for (long i = 0; i < iterations; i++) {
+            //每次群发都是新的消息对象，和业务代码一样，二进制帧的编码包含在耗时里
+            registry.publish(topic, message);
+        }
+        long nanos = (System.nanoTime() - start) / iterations;
+
+        long sink = 0;
+        for (ContainerStub stub : stubs) {
+            sink += stub.written;
+        }
+        if (sink == 0) {
+            throw new IllegalStateException("没有发送任何消息");
+        }
+        return nanos;
+    }
+
+    private static String reminder() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", 2);
+        map.put("orderId", 1234567L);
+        map.put("content", "订单号：1700000000000");
+        map.put("topic", "shop:1:orders");
+        map.put("seq", 1700000000000000L);
+        return JSON.toJSONString(map);
+    }
+
+    private static String kitchen() {
+        List<Map<String, Object>> dishes = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            Map<String, Object> dish = new HashMap<>();
+            dish.put("name", "宫保鸡丁" + i + "（微辣）");
+            dish.put("number", i);
+            dishes.add(dish);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", 4);
+        map.put("action", "add");
+        map.put("dishes", dishes);
+        map.put("topic", "shop:1:kitchen");
+        map.put("seq", 1700000000000000L);
+        return JSON.toJSONString(map);
+    }
+
+    /**
+     * 模拟容器的一个连接，输出缓冲区和编码器每个连接一份
+     */
+    private static class ContainerStub {
+
+        private final ByteBuffer output = ByteBuffer.allocate(8192);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private long written;
+
+        private Session session() {
+            RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                        if ("sendText".equals(method.getName()) && args.length == 2) {
+                            output.clear();
+                            encoder.reset();
+                            encoder.encode(CharBuffer.wrap((String) args[0]), output, true);
+                            written += output.position();
+                            ((SendHandler) args[1]).onResult(new SendResult());
+                        } else if ("sendBinary".equals(method.getName()) && args.length == 2) {
+                            output.clear();
+                            output.put((ByteBuffer) args[0]);
+                            written += output.position();
+                            ((SendHandler) args[1]).onResult(new SendResult());
+                        }
+                        return null;
+                    });
+            return (Session) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                        if ("getAsyncRemote".equals(method.getName())) {
+                            return remote;
+                        }
+                        if ("isOpen".equals(method.getName())) {
+                            return true;
+                        }
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    });
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.sky.websocket;
+
+import com.sky.enumeration.OverflowPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OutboundSessionTest {
+
+    private Session session;
+    private RemoteEndpoint.Async remote;
+    private WebSocketSessionRegistry registry;
+
+    //已经交给容器发送、还没有回调的消息
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<SendHandler> handlers = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        session = mock(Session.class);
+        remote = mock(RemoteEndpoint.Async.class);
+        registry = mock(WebSocketSessionRegistry.class);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            handlers.add(invocation.getArgument(1));
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            sent.add(StandardCharsets.UTF_8.decode(buffer).toString());
+            handlers.add(invocation.getArgument(1));
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+    }
+
+    private OutboundSession create(int capacity, OverflowPolicy policy) {
+        return new OutboundSession("1", session, capacity, policy, 1000, registry);
+    }
+
+    //完成最近一次发送，回调里会继续发送队列中的下一条
+    private void complete() {
+        handlers.get(handlers.size() - 1).onResult(new SendResult());
+    }
+
+    @Test
+    public void sendsOneAtATimeInOrder() {
+        OutboundSession outbound = create(10, OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(outbound.enqueue("a"));
+        assertTrue(outbound.enqueue("b"));
+        assertTrue(outbound.enqueue("c"));
+
+        //第一条在发送，其余在排队
+        assertEquals(Collections.singletonList("a"), sent);
+        assertEquals(2, outbound.getQueued());
+
+        complete();
+        complete();
+        complete();
+
+        assertEquals(Arrays.asList("a", "b", "c"), sent);
+        assertEquals(0, outbound.getQueued());
+        verify(registry, times(3)).onSent(same(outbound), anyLong());
+    }
+
+    @Test
+    public void dropOldestKeepsNewestMessages() {
+        OutboundSession outbound = create(2, OverflowPolicy.DROP_OLDEST);
+
+        outbound.enqueue("a");
+        outbound.enqueue("b");
+        outbound.enqueue("c");
+        //a在发送，队列里是b、c，d进来挤掉b
+        assertTrue(outbound.enqueue("d"));
+
+        verify(registry).onDropped(outbound);
+        complete();
+        complete();
+        complete();
+        assertEquals(Arrays.asList("a", "c", "d"), sent);
+        assertFalse(outbound.isClosed());
+    }
+
+    @Test
+    public void disconnectReportsOverflowOnce() throws InterruptedException {
+        OutboundSession outbound = create(1, OverflowPolicy.DISCONNECT);
+        outbound.enqueue("sending");
+        outbound.enqueue("queued");
+
+        //多个线程同时往已满的队列里放消息，只有一个报告溢出
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (outbound.enqueue("overflow")) {
+                    accepted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(0, accepted.get());
+        assertTrue(outbound.isClosed());
+        verify(registry, times(1)).onOverflow(outbound);
+    }
+
+    @Test
+    public void closedSessionIsNotReportedAsOverflow() {
+        OutboundSession outbound = create(1, OverflowPolicy.DISCONNECT);
+        outbound.enqueue("sending");
+        outbound.enqueue("queued");
+
+        outbound.markClosed();
+
+        assertFalse(outbound.enqueue("late"));
+        assertEquals(0, outbound.getQueued());
+        verify(registry, never()).onOverflow(any());
+    }
+
+    @Test
+    public void markClosedStopsDraining() {
+        OutboundSession outbound = create(10, OverflowPolicy.DROP_OLDEST);
+        outbound.enqueue("a");
+        outbound.enqueue("b");
+
+        outbound.markClosed();
+        complete();
+
+        assertEquals(Collections.singletonList("a"), sent);
+        assertFalse(outbound.enqueue("c"));
+    }
+
+    @Test
+    public void failedSendIsReported() {
+        OutboundSession outbound = create(10, OverflowPolicy.DROP_OLDEST);
+        outbound.enqueue("a");
+        outbound.enqueue("b");
+
+        IOException failure = new IOException("broken pipe");
+        handlers.get(0).onResult(new SendResult(failure));
+
+        verify(registry).onSendFailed(outbound, failure);
+        verify(registry, never()).onSent(any(), anyLong());
+        assertEquals(Collections.singletonList("a"), sent);
+    }
+
+    @Test
+    public void containerExceptionIsReported() {
+        IllegalStateException failure = new IllegalStateException("closed");
+        doAnswer(invocation -> {
+            throw failure;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        OutboundSession outbound = create(10, OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(outbound.enqueue("a"));
+
+        verify(registry).onSendFailed(outbound, failure);
+    }
+
+    @Test
+    public void binarySessionsShareEncodedBytes() {
+        OutboundSession first = create(10, OverflowPolicy.DROP_OLDEST);
+        OutboundSession second = create(10, OverflowPolicy.DROP_OLDEST);
+        first.setBinary(true);
+        second.setBinary(true);
+        EncodedMessage message = EncodedMessage.of("{\"topic\":\"订单\"}");
+
+        first.enqueue(message);
+        second.enqueue(message);
+
+        //每个连接读取自己的视图，第一个连接读完不影响第二个
+        assertEquals(Arrays.asList("{\"topic\":\"订单\"}", "{\"topic\":\"订单\"}"), sent);
+        verify(remote, never()).sendText(anyString(), any(SendHandler.class));
+    }
+}
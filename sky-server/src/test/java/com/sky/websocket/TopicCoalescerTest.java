@@ -0,0 +1,128 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TopicCoalescerTest {
+
+    private final WebSocketProperties properties = new WebSocketProperties();
+    private final WebSocketSessionRegistry registry = mock(WebSocketSessionRegistry.class);
+    private final TopicCoalescer coalescer = new TopicCoalescer();
+
+    //每次发送的消息和合并后的数组
+    private final List<List<String>> deliveries = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> batchFrames = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(coalescer, "webSocketProperties", properties);
+        ReflectionTestUtils.setField(coalescer, "registry", registry);
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+        doAnswer(invocation -> {
+            List<EncodedMessage> messages = invocation.getArgument(1);
+            EncodedMessage batchFrame = invocation.getArgument(2);
+            List<String> texts = new ArrayList<>();
+            for (EncodedMessage message : messages) {
+                texts.add(message.getText());
+            }
+            deliveries.add(texts);
+            batchFrames.add(batchFrame == null ? null : batchFrame.getText());
+            return texts.size();
+        }).when(registry).publishBatch(eq("t"), anyList(), any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    public void firstMessageIsSentImmediately() {
+        properties.setCoalesceWindowMillis(10_000);
+        coalescer.init();
+
+        coalescer.publish("t", "{\"n\":1}");
+
+        assertEquals(Collections.singletonList(Collections.singletonList("{\"n\":1}")), deliveries);
+        assertNull(batchFrames.get(0));
+    }
+
+    @Test
+    public void messagesInWindowAreBatched() throws InterruptedException {
+        properties.setCoalesceWindowMillis(50);
+        coalescer.init();
+        CountDownLatch flushed = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            List<EncodedMessage> messages = invocation.getArgument(1);
+            EncodedMessage batchFrame = invocation.getArgument(2);
+            List<String> texts = new ArrayList<>();
+            for (EncodedMessage message : messages) {
+                texts.add(message.getText());
+            }
+            deliveries.add(texts);
+            batchFrames.add(batchFrame == null ? null : batchFrame.getText());
+            flushed.countDown();
+            return texts.size();
+        }).when(registry).publishBatch(eq("t"), anyList(), any());
+
+        coalescer.publish("t", "{\"n\":1}");
+        coalescer.publish("t", "{\"n\":2}");
+        coalescer.publish("t", "{\"n\":3}");
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(
+                Collections.singletonList("{\"n\":1}"),
+                Arrays.asList("{\"n\":2}", "{\"n\":3}")), deliveries);
+        assertEquals("[{\"n\":2},{\"n\":3}]", batchFrames.get(1));
+    }
+
+    @Test
+    public void fullWindowIsFlushedEarly() {
+        properties.setCoalesceWindowMillis(10_000);
+        properties.setCoalesceMaxMessages(3);
+        coalescer.init();
+
+        for (int i = 1; i <= 4; i++) {
+            coalescer.publish("t", "{\"n\":" + i + "}");
+        }
+
+        //第一条立即发送，之后缓存到3条时不等窗口结束直接发送
+        assertEquals(Arrays.asList(
+                Collections.singletonList("{\"n\":1}"),
+                Arrays.asList("{\"n\":2}", "{\"n\":3}", "{\"n\":4}")), deliveries);
+    }
+
+    @Test
+    public void zeroWindowSendsEveryMessage() {
+        properties.setCoalesceWindowMillis(0);
+        coalescer.init();
+
+        coalescer.publish("t", "{\"n\":1}");
+        coalescer.publish("t", "{\"n\":2}");
+
+        assertEquals(Arrays.asList(
+                Collections.singletonList("{\"n\":1}"),
+                Collections.singletonList("{\"n\":2}")), deliveries);
+        assertEquals(Arrays.asList(null, null), batchFrames);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TopicReplayBufferTest {
+
+    private final WebSocketProperties properties = new WebSocketProperties();
+    private final TopicReplayBuffer buffer = new TopicReplayBuffer();
+    private long start;
+
+    @BeforeEach
+    public void setUp() {
+        properties.setReplayCapacity(3);
+        ReflectionTestUtils.setField(buffer, "webSocketProperties", properties);
+        buffer.init();
+        start = buffer.currentSeq();
+    }
+
+    private long publish(String topic, String message) {
+        long seq = buffer.nextSeq();
+        buffer.append(topic, seq, message);
+        return seq;
+    }
+
+    @Test
+    public void replaysMessagesAfterLastSeq() {
+        long first = publish("t", "a");
+        publish("t", "b");
+        publish("t", "c");
+
+        assertEquals(Arrays.asList("b", "c"), buffer.since("t", first));
+        assertEquals(Collections.emptyList(), buffer.since("t", buffer.currentSeq()));
+    }
+
+    @Test
+    public void seqBeforeStartupNeedsResync() {
+        publish("t", "a");
+
+        //启动之前的消息没有保存
+        assertNull(buffer.since("t", start - 1));
+        assertEquals(Collections.singletonList("a"), buffer.since("t", start));
+    }
+
+    @Test
+    public void evictedMessagesNeedResync() {
+        long first = publish("t", "a");
+        long second = publish("t", "b");
+        publish("t", "c");
+        publish("t", "d");
+
+        //容量为3，a被覆盖，从a之前开始无法补全，从a开始还可以
+        assertNull(buffer.since("t", first - 1));
+        assertEquals(Arrays.asList("b", "c", "d"), buffer.since("t", first));
+        assertEquals(Arrays.asList("c", "d"), buffer.since("t", second));
+    }
+
+    @Test
+    public void unknownTopicStartsAtCurrentSeq() {
+        publish("other", "a");
+        long current = buffer.currentSeq();
+
+        //主题创建之前其他主题的消息不影响，新主题从当前序号开始可以补全
+        assertEquals(Collections.emptyList(), buffer.since("t", current));
+        publish("t", "b");
+        assertEquals(Collections.singletonList("b"), buffer.since("t", current));
+        assertNull(buffer.since("t", current - 1));
+    }
+
+    @Test
+    public void seqAheadOfServerNeedsResync() {
+        publish("t", "a");
+
+        assertNull(buffer.since("t", buffer.currentSeq() + 1));
+    }
+
+    @Test
+    public void olderSeqIsIgnored() {
+        long first = publish("t", "a");
+        long second = publish("t", "b");
+
+        //序号不大于已保存的消息时不保存，不影响下限
+        buffer.append("t", first, "late");
+        buffer.append("t", second, "duplicate");
+
+        assertEquals(Collections.singletonList("b"), buffer.since("t", first));
+        assertEquals(Arrays.asList("a", "b"), buffer.since("t", start));
+    }
+}
@@ -0,0 +1,125 @@
+package com.sky.websocket;
+
+import com.sky.enumeration.OverflowPolicy;
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebSocketSessionRegistryTest {
+
+    private final WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(registry, "webSocketProperties", new WebSocketProperties());
+        ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "closeExecutor", (Executor) Runnable::run);
+        registry.init();
+    }
+
+    //发送立即完成的连接，按发送顺序记录消息
+    private OutboundSession connect(String id) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            SendHandler handler = invocation.getArgument(1);
+            handler.onResult(new SendResult());
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        return registry.register(id, session);
+    }
+
+    @Test
+    public void replayIsQueuedBeforeConcurrentLiveMessages() throws InterruptedException {
+        OutboundSession outbound = connect("1");
+        String topic = WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID);
+        Thread[] live = new Thread[1];
+
+        boolean subscribed = registry.subscribe(outbound, topic, () -> {
+            //补发期间另一个线程发送新消息，必须等补发放入队列之后才能发送
+            live[0] = new Thread(() -> registry.publish(topic, "live"));
+            live[0].start();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            outbound.enqueue("replayed");
+        });
+        live[0].join(5000);
+
+        assertTrue(subscribed);
+        assertEquals(Arrays.asList("replayed", "live"), sent);
+    }
+
+    @Test
+    public void unknownTopicSkipsReplay() {
+        OutboundSession outbound = connect("1");
+        boolean[] replayed = new boolean[1];
+
+        assertFalse(registry.subscribe(outbound, "unknown", () -> replayed[0] = true));
+        assertFalse(replayed[0]);
+    }
+
+    @Test
+    public void rejectedCloseNeverRunsOnPublisher() throws Exception {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setSendQueueCapacity(1);
+        properties.setOverflowPolicy(OverflowPolicy.DISCONNECT);
+        ReflectionTestUtils.setField(registry, "webSocketProperties", properties);
+        ReflectionTestUtils.setField(registry, "closeExecutor", (Executor) task -> {
+            throw new RejectedExecutionException("full");
+        });
+        //发送一直不完成的慢客户端
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        OutboundSession outbound = registry.register("1", session);
+        String topic = WebSocketTopics.shopOrders(WebSocketTopics.DEFAULT_SHOP_ID);
+        registry.subscribe(outbound, topic);
+
+        registry.publish(topic, "a");
+        registry.publish(topic, "b");
+        registry.publish(topic, "c");
+
+        //队列溢出后连接已经标记关闭并取消订阅，但没有在发送线程上关闭
+        assertTrue(outbound.isClosed());
+        assertTrue(outbound.getTopics().isEmpty());
+        assertEquals(0, registry.publish(topic, "d"));
+        verify(session, never()).close(any(CloseReason.class));
+
+        //线程池恢复后由心跳重新提交关闭
+        ReflectionTestUtils.setField(registry, "closeExecutor", (Executor) Runnable::run);
+        assertTrue(registry.retryClose(outbound));
+        verify(session).close(any(CloseReason.class));
+    }
+}